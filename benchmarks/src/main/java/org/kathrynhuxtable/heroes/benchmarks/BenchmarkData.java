@@ -0,0 +1,138 @@
+/*
+ * Copyright 2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.heroes.benchmarks;
+
+import java.util.Date;
+
+import org.kathrynhuxtable.heroes.service.persistence.domain.HeroDO;
+import org.kathrynhuxtable.heroes.uifilter.UIFilterServiceImpl;
+import org.kathrynhuxtable.heroes.uifilter.bean.*;
+
+/**
+ * The heroes and filters shared by the benchmarks. Heroes are generated from the row
+ * number, so that every run sees the same data.
+ */
+final class BenchmarkData {
+
+	private static final String[] NAMES = {
+			"Batman", "Superman", "Wonder Woman", "Aquaman", "Flash", "Green Lantern", "Cyborg",
+			"Martian Manhunter", "Zatanna", "Black Canary", "Nightwing", "Raven", "Starfire", "Zoë"
+	};
+	private static final String[] POWERS = {
+			"Money", "Strength", "Lasso of Truth", "Water", "Speed", "Willpower", "Technology",
+			"Shapeshifting", "Magic", "Canary Cry", "Acrobatics", "Empathy", "Flight", "Café au lait"
+	};
+	private static final String[] ALTER_EGOS = {
+			"Bruce Wayne", "Clark Kent", "Diana Prince", "Arthur Curry", "Barry Allen", "Hal Jordan",
+			"Victor Stone", "J'onn J'onzz", "Zatanna Zatara", "Dinah Lance", "Dick Grayson",
+			"Rachel Roth", "Koriand'r", "Renée Montoya"
+	};
+	private static final long EPOCH = 946684800000L;
+	private static final long DAY = 86400000L;
+
+	private BenchmarkData() {
+	}
+
+	/**
+	 * Generate a Hero. The name is made unique by the row number.
+	 *
+	 * @param row the row number, from zero.
+	 * @return the HeroDO, with its search keys set but no id.
+	 */
+	static HeroDO hero(int row) {
+		HeroDO hero = HeroDO.builder()
+				.name(NAMES[row % NAMES.length] + " " + row)
+				.power(POWERS[(row / NAMES.length) % POWERS.length])
+				.alterEgo(ALTER_EGOS[(row / 7) % ALTER_EGOS.length])
+				.rating(row % 11 == 0 ? null : row % 100)
+				.powerDate(new Date(EPOCH + (row % 5000) * DAY))
+				.build();
+		hero.updateSearchKeys();
+		return hero;
+	}
+
+	/**
+	 * A filter on one attribute.
+	 *
+	 * @return the filter.
+	 */
+	static UIFilter simpleFilter() {
+		return UIFilter.builder()
+				.rows(20)
+				.addSortField("name", 1)
+				.addFilter("power", UIFilterData.builder()
+						.value("Speed")
+						.matchMode(UIFilterMatchMode.equals)
+						.build())
+				.build();
+	}
+
+	/**
+	 * A filter on several attributes, with more than one constraint on one of them.
+	 *
+	 * @return the filter.
+	 */
+	static UIFilter multiFieldFilter() {
+		return UIFilter.builder()
+				.rows(20)
+				.addSortField("rating", -1)
+				.addSortField("name", 1)
+				.addFilter("name", UIFilterData.builder()
+						.value("man")
+						.matchMode(UIFilterMatchMode.contains)
+						.build())
+				.addFilter("rating", UIFilterData.builder()
+						.value(50)
+						.matchMode(UIFilterMatchMode.gte)
+						.operator(UIFilterOperator.and)
+						.build())
+				.addFilter("rating", UIFilterData.builder()
+						.value(90)
+						.matchMode(UIFilterMatchMode.lt)
+						.operator(UIFilterOperator.and)
+						.build())
+				.addFilter("alterEgo", UIFilterData.builder()
+						.value("b")
+						.matchMode(UIFilterMatchMode.startsWith)
+						.build())
+				.build();
+	}
+
+	/**
+	 * A global filter, searching all the global attributes.
+	 *
+	 * @return the filter.
+	 */
+	static UIFilter globalFilter() {
+		return UIFilter.builder()
+				.rows(20)
+				.globalFieldName("global")
+				.addFilter("global", UIFilterData.builder()
+						.value("lant")
+						.matchMode(UIFilterMatchMode.contains)
+						.build())
+				.build();
+	}
+
+	/**
+	 * The attributes searched by a global filter.
+	 *
+	 * @return the attribute names.
+	 */
+	static String[] globalAttributes() {
+		return UIFilterServiceImpl.GLOBAL_ATTRIBUTES.toArray(new String[0]);
+	}
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.heroes.benchmarks;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.HashMap;
+import java.util.Map;
+import javax.sql.DataSource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+
+import org.kathrynhuxtable.heroes.service.persistence.domain.HeroDO;
+import org.kathrynhuxtable.heroes.uifilter.Trigrams;
+import org.kathrynhuxtable.heroes.uifilter.TrigramIndexed;
+
+/**
+ * An in-memory Derby database holding the Hero tables, configured as the resources
+ * module configures the real one, but without the services.
+ */
+@Configuration
+@EnableJpaRepositories({"org.kathrynhuxtable.heroes.service.persistence", "org.kathrynhuxtable.heroes.uifilter"})
+@EnableTransactionManagement
+public class BenchmarkDatabase {
+
+	public static final String PERSISTENCE_PACKAGE = "org.kathrynhuxtable.heroes.service.persistence";
+	public static final String DRIVER_CLASS = "org.apache.derby.jdbc.EmbeddedDriver";
+	public static final String URL_PROPERTY = "benchmarks.database.url";
+
+	private static final String[] TRIGRAM_ATTRIBUTES = HeroDO.class.getAnnotation(TrigramIndexed.class).attributes();
+	private static final int BATCH_SIZE = 1000;
+
+	/**
+	 * Start a context over a new in-memory database, and seed it with Heroes.
+	 *
+	 * @param name      the database name.
+	 * @param heroCount the number of Heroes to insert.
+	 * @return the context, to be closed by the caller.
+	 * @throws SQLException if the Heroes cannot be inserted.
+	 */
+	public static AnnotationConfigApplicationContext open(String name, int heroCount) throws SQLException {
+		return open(name, heroCount, BenchmarkDatabase.class);
+	}
+
+	/**
+	 * Start a context over a new in-memory database from the given configuration classes,
+	 * and seed it with Heroes.
+	 *
+	 * @param name      the database name.
+	 * @param heroCount the number of Heroes to insert.
+	 * @param configs   the configuration classes, which must import this one.
+	 * @return the context, to be closed by the caller.
+	 * @throws SQLException if the Heroes cannot be inserted.
+	 */
+	public static AnnotationConfigApplicationContext open(String name, int heroCount, Class<?>... configs) throws SQLException {
+		System.setProperty(URL_PROPERTY, "jdbc:derby:memory:" + name + ";create=true");
+		AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(configs);
+		seed(context.getBean(DataSource.class), heroCount);
+		return context;
+	}
+
+	/**
+	 * Insert Heroes, along with their trigram index entries, in JDBC batches. This is far
+	 * faster than going through the entity manager, which matters for a million rows.
+	 */
+	private static void seed(DataSource dataSource, int heroCount) throws SQLException {
+		try (Connection connection = dataSource.getConnection();
+		     PreparedStatement heroes = connection.prepareStatement(
+				     "INSERT INTO APP.HERO (ID, NAME, POWER, ALTER_EGO, RATING, POWER_DATE, NAME_KEY, POWER_KEY, ALTER_EGO_KEY)"
+						     + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)");
+		     PreparedStatement trigrams = connection.prepareStatement(
+				     "INSERT INTO APP.HERO_TRIGRAM (ATTRIBUTE, TRIGRAM, HERO_ID) VALUES (?, ?, ?)")) {
+			connection.setAutoCommit(false);
+			for (int row = 0; row < heroCount; row++) {
+				HeroDO hero = BenchmarkData.hero(row);
+				long id = row + 1;
+				heroes.setLong(1, id);
+				heroes.setString(2, hero.getName());
+				heroes.setString(3, hero.getPower());
+				heroes.setString(4, hero.getAlterEgo());
+				if (hero.getRating() == null) {
+					heroes.setNull(5, Types.INTEGER);
+				} else {
+					heroes.setInt(5, hero.getRating());
+				}
+				heroes.setTimestamp(6, new Timestamp(hero.getPowerDate().getTime()));
+				heroes.setString(7, hero.getNameKey());
+				heroes.setString(8, hero.getPowerKey());
+				heroes.setString(9, hero.getAlterEgoKey());
+				heroes.addBatch();
+
+				String[] values = {hero.getName(), hero.getPower(), hero.getAlterEgo()};
+				for (int i = 0; i < TRIGRAM_ATTRIBUTES.length; i++) {
+					for (String trigram : Trigrams.of(values[i])) {
+						trigrams.setString(1, TRIGRAM_ATTRIBUTES[i]);
+						trigrams.setString(2, trigram);
+						trigrams.setLong(3, id);
+						trigrams.addBatch();
+					}
+				}
+
+				if ((row + 1) % BATCH_SIZE == 0) {
+					heroes.executeBatch();
+					trigrams.executeBatch();
+					connection.commit();
+				}
+			}
+			heroes.executeBatch();
+			trigrams.executeBatch();
+			connection.commit();
+		}
+	}
+
+	@Bean
+	public HikariDataSource dataSource() {
+		final HikariDataSource dataSource = new HikariDataSource();
+		dataSource.setPoolName("benchmarks");
+		dataSource.setDriverClassName(DRIVER_CLASS);
+		dataSource.setJdbcUrl(System.getProperty(URL_PROPERTY, "jdbc:derby:memory:heroes;create=true"));
+		dataSource.setUsername("");
+		dataSource.setPassword("");
+		return dataSource;
+	}
+
+	@Bean
+	public LocalContainerEntityManagerFactoryBean entityManagerFactory() {
+		HibernateJpaVendorAdapter vendorAdapter = new HibernateJpaVendorAdapter();
+		vendorAdapter.setGenerateDdl(true);
+
+		LocalContainerEntityManagerFactoryBean factory = new LocalContainerEntityManagerFactoryBean();
+		factory.setJpaVendorAdapter(vendorAdapter);
+		factory.setPackagesToScan(PERSISTENCE_PACKAGE);
+		factory.setDataSource(dataSource());
+
+		Map<String, Object> jpaProperties = new HashMap<>();
+		// Compiled filter plans share criteria queries between executions, so copy them on execution.
+		jpaProperties.put("hibernate.criteria.copy_tree", true);
+		jpaProperties.put("hibernate.jdbc.batch_size", 50);
+		jpaProperties.put("hibernate.order_inserts", true);
+		jpaProperties.put("hibernate.order_updates", true);
+		factory.setJpaPropertyMap(jpaProperties);
+		return factory;
+	}
+
+	@Bean
+	public PlatformTransactionManager transactionManager(EntityManagerFactory entityManagerFactory) {
+		JpaTransactionManager txManager = new JpaTransactionManager();
+		txManager.setEntityManagerFactory(entityManagerFactory);
+		return txManager;
+	}
+}
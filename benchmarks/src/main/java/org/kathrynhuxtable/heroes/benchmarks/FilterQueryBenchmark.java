@@ -0,0 +1,81 @@
+/*
+ * Copyright 2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.heroes.benchmarks;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import org.kathrynhuxtable.heroes.service.persistence.HeroDAO;
+import org.kathrynhuxtable.heroes.service.persistence.domain.HeroDO;
+import org.kathrynhuxtable.heroes.uifilter.bean.UIFilter;
+
+/**
+ * Finding and counting Heroes by filter against an in-memory Derby database. The counts
+ * go through the DAO rather than the count cache, so that every invocation runs the query.
+ * <p>
+ * Seeding a million Heroes, with their trigram index, takes several minutes; pass
+ * {@code -p heroCount=10000} to run the smaller sizes only.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class FilterQueryBenchmark {
+
+	@Param({"10000", "100000", "1000000"})
+	private int heroCount;
+
+	@Param({"simple", "multiField", "global"})
+	private String filterType;
+
+	private AnnotationConfigApplicationContext context;
+	private HeroDAO heroDao;
+	private UIFilter filter;
+
+	@Setup(Level.Trial)
+	public void setUp() throws SQLException {
+		context = BenchmarkDatabase.open("query" + heroCount, heroCount);
+		heroDao = context.getBean(HeroDAO.class);
+		filter = switch (filterType) {
+			case "simple" -> BenchmarkData.simpleFilter();
+			case "multiField" -> BenchmarkData.multiFieldFilter();
+			case "global" -> BenchmarkData.globalFilter();
+			default -> throw new IllegalArgumentException("Unknown filter type: " + filterType);
+		};
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		context.close();
+	}
+
+	@Benchmark
+	public List<HeroDO> findByFilter() {
+		return heroDao.findByFilter(filter);
+	}
+
+	@Benchmark
+	public long countByFilter() {
+		return heroDao.countByFilter(filter, heroDao);
+	}
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.heroes.benchmarks;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import org.kathrynhuxtable.heroes.service.persistence.domain.HeroDO;
+import org.kathrynhuxtable.heroes.uifilter.FilterSpecification;
+import org.kathrynhuxtable.heroes.uifilter.bean.UIFilter;
+
+/**
+ * Building the criteria predicate of a filter, without running the query.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FilterSpecificationBenchmark {
+
+	@Param({"simple", "multiField", "global"})
+	private String filterType;
+
+	private AnnotationConfigApplicationContext context;
+	private EntityManager entityManager;
+	private CriteriaBuilder cb;
+	private UIFilter filter;
+
+	@Setup(Level.Trial)
+	public void setUp() throws SQLException {
+		context = BenchmarkDatabase.open("specification", 0);
+		entityManager = context.getBean(EntityManagerFactory.class).createEntityManager();
+		cb = entityManager.getCriteriaBuilder();
+		filter = switch (filterType) {
+			case "simple" -> BenchmarkData.simpleFilter();
+			case "multiField" -> BenchmarkData.multiFieldFilter();
+			case "global" -> BenchmarkData.globalFilter();
+			default -> throw new IllegalArgumentException("Unknown filter type: " + filterType);
+		};
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		entityManager.close();
+		context.close();
+	}
+
+	@Benchmark
+	public Predicate toPredicate() {
+		CriteriaQuery<HeroDO> cq = cb.createQuery(HeroDO.class);
+		Root<HeroDO> root = cq.from(HeroDO.class);
+		return new FilterSpecification<HeroDO>(filter)
+				.setGlobalAttributes(BenchmarkData.globalAttributes())
+				.toPredicate(root, cq, cb);
+	}
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.heroes.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import org.kathrynhuxtable.heroes.service.HeroService;
+import org.kathrynhuxtable.heroes.service.persistence.domain.HeroDO;
+
+/**
+ * Mapping a page of HeroDO objects to Hero transfer objects.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HeroMappingBenchmark {
+
+	@Param({"20", "500"})
+	private int pageSize;
+
+	private HeroService heroService;
+	private List<HeroDO> heroes;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		// Mapping uses none of the collaborators.
+		heroService = new HeroService(null, Optional.empty(), null, null, null, null, null, null);
+		heroes = new ArrayList<>(pageSize);
+		for (int row = 0; row < pageSize; row++) {
+			HeroDO hero = BenchmarkData.hero(row);
+			hero.setId(row + 1L);
+			heroes.add(hero);
+		}
+	}
+
+	@Benchmark
+	public void toHero(Blackhole blackhole) {
+		for (HeroDO hero : heroes) {
+			blackhole.consume(heroService.toHero(hero));
+		}
+	}
+}
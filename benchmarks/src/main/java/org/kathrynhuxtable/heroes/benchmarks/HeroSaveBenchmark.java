@@ -0,0 +1,90 @@
+/*
+ * Copyright 2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.heroes.benchmarks;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+
+import org.kathrynhuxtable.heroes.service.HeroService;
+import org.kathrynhuxtable.heroes.service.bean.Hero;
+import org.kathrynhuxtable.heroes.service.bean.HeroBatchResult;
+
+/**
+ * Creating Heroes one at a time, each in its own transaction, against creating them in a
+ * batch. Each invocation saves {@code batchSize} new Heroes, so the time per invocation
+ * divided by the batch size is the cost of one Hero.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class HeroSaveBenchmark {
+
+	/**
+	 * The services over the benchmark database.
+	 */
+	@Configuration
+	@Import(BenchmarkDatabase.class)
+	@ComponentScan("org.kathrynhuxtable.heroes.service")
+	public static class Services {
+	}
+
+	@Param({"100", "1000", "5000"})
+	private int batchSize;
+
+	private AnnotationConfigApplicationContext context;
+	private HeroService heroService;
+	private List<Hero> heroes;
+
+	@Setup(Level.Trial)
+	public void setUp() throws SQLException {
+		context = BenchmarkDatabase.open("save" + batchSize, 0, Services.class);
+		heroService = context.getBean(HeroService.class);
+		heroes = new ArrayList<>(batchSize);
+		for (int row = 0; row < batchSize; row++) {
+			heroes.add(heroService.toHero(BenchmarkData.hero(row)));
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		context.close();
+	}
+
+	@Benchmark
+	public List<Hero> saveOneAtATime() {
+		List<Hero> saved = new ArrayList<>(heroes.size());
+		for (Hero hero : heroes) {
+			saved.add(heroService.save(hero));
+		}
+		return saved;
+	}
+
+	@Benchmark
+	public List<HeroBatchResult> saveAll() {
+		return heroService.saveAll(heroes);
+	}
+}
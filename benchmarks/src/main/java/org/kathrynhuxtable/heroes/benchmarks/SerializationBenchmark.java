@@ -0,0 +1,113 @@
+/*
+ * Copyright 2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.heroes.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import org.kathrynhuxtable.heroes.resources.config.WebConfig;
+import org.kathrynhuxtable.heroes.service.bean.Hero;
+import org.kathrynhuxtable.heroes.service.bean.UIFilterResult;
+import org.kathrynhuxtable.heroes.service.persistence.domain.HeroDO;
+
+/**
+ * Writing a page of Heroes as JSON through the message converter configured by WebConfig.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+	private static final Type RESULT_TYPE = new TypeReference<UIFilterResult<Hero>>() {
+	}.getType();
+
+	@Param({"20", "500"})
+	private int pageSize;
+
+	private MappingJackson2HttpMessageConverter converter;
+	private UIFilterResult<Hero> result;
+	private BufferedOutputMessage message;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		List<HttpMessageConverter<?>> converters = new ArrayList<>();
+		new WebConfig().configureMessageConverters(converters);
+		converter = converters.stream()
+				.filter(MappingJackson2HttpMessageConverter.class::isInstance)
+				.map(MappingJackson2HttpMessageConverter.class::cast)
+				.findFirst()
+				.orElseThrow();
+
+		List<Hero> heroes = new ArrayList<>(pageSize);
+		for (int row = 0; row < pageSize; row++) {
+			HeroDO hero = BenchmarkData.hero(row);
+			heroes.add(new Hero(row + 1L, hero.getName(), hero.getPower(), hero.getAlterEgo(),
+					hero.getRating(), hero.getPowerDate(), 0L));
+		}
+		result = new UIFilterResult<>();
+		result.setRecords(heroes);
+		result.setTotalRecords(pageSize * 10);
+		result.setMore(true);
+		message = new BufferedOutputMessage();
+	}
+
+	@Benchmark
+	public int write() throws IOException {
+		message.reset();
+		converter.write(result, RESULT_TYPE, MediaType.APPLICATION_JSON, message);
+		return message.body.size();
+	}
+
+	/**
+	 * An output message writing to a reused buffer, so that only the converter allocates.
+	 */
+	private static class BufferedOutputMessage implements HttpOutputMessage {
+
+		private final ByteArrayOutputStream body = new ByteArrayOutputStream(1 << 16);
+		private final HttpHeaders headers = new HttpHeaders();
+
+		void reset() {
+			body.reset();
+			headers.clear();
+		}
+
+		@Override
+		public OutputStream getBody() {
+			return body;
+		}
+
+		@Override
+		public HttpHeaders getHeaders() {
+			return headers;
+		}
+	}
+}
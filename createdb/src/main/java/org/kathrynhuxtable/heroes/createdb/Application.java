@@ -25,6 +25,8 @@ import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 
+import org.kathrynhuxtable.heroes.service.AvatarService;
+import org.kathrynhuxtable.heroes.service.HeroTrigramIndexer;
 import org.kathrynhuxtable.heroes.service.persistence.*;
 import org.kathrynhuxtable.heroes.service.persistence.domain.*;
 import org.kathrynhuxtable.heroes.service.persistence.util.DerbySlf4jBridge;
@@ -38,8 +40,10 @@ public class Application implements CommandLineRunner {
 	private final LoginInfoDAO loginInfoDao;
 	private final PrivilegeDAO privilegeDao;
 	private final AvatarDAO avatarDAO;
+	private final AvatarService avatarService;
 	private final UserDAO userDao;
 	private final HeroDAO heroDao;
+	private final HeroTrigramIndexer heroTrigramIndexer;
 
 	public static void main(String[] args) {
 		try {
@@ -72,6 +76,10 @@ public class Application implements CommandLineRunner {
 		initializeHeroes();
 		log.info("Initialized Heroes");
 
+		log.info("Indexing Heroes");
+		heroTrigramIndexer.rebuild();
+		log.info("Indexed Heroes");
+
 	}
 
 	private void deleteAllData() {
@@ -117,12 +125,8 @@ public class Application implements CommandLineRunner {
 						.getClassLoader()
 						.getResourceAsStream(userData.getAvatarFile())) {
 					if (inputStream != null) {
-						AvatarDO avatarDO = AvatarDO.builder()
-								.userId(user.getUserId())
-								.avatar(IOUtils.toByteArray(inputStream))
-								.mimeType(userData.getAvatarMimeType())
-								.build();
-						avatarDAO.save(avatarDO);
+						avatarService.saveAvatar(user.getUserId(), userData.getAvatarMimeType(),
+								IOUtils.toByteArray(inputStream));
 					}
 				} catch (IOException e) {
 					log.error("Unable to load avatar file " + userData.getAvatarFile(), e);
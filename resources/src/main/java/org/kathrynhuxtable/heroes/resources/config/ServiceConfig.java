@@ -15,15 +15,20 @@
  */
 package org.kathrynhuxtable.heroes.resources.config;
 
+import java.util.HashMap;
+import java.util.Map;
 import javax.sql.DataSource;
 
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Metrics;
 import jakarta.persistence.EntityManagerFactory;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
-import org.springframework.jdbc.datasource.DriverManagerDataSource;
 import org.springframework.orm.jpa.JpaTransactionManager;
 import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
 import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
@@ -47,19 +52,30 @@ public class ServiceConfig {
         log.info("Initializing ServiceConfig");
     }
 
+    /**
+     * The connection pool. Its size, timeouts and leak detection are bound from
+     * heroes.datasource. It publishes the hikaricp.connections gauges of active, idle and
+     * pending connections, and the hikaricp.connections.acquire timer of checkouts.
+     */
     @Bean
-    public DataSource dataSource() {
+    @ConfigurationProperties(prefix = "heroes.datasource")
+    public HikariDataSource dataSource(@Value("${heroes.derby.statement-cache-size:100}") int statementCacheSize) {
+        // Derby caches prepared statements for all connections, and reads the size when it boots.
+        System.setProperty("derby.language.statementCacheSize", String.valueOf(statementCacheSize));
+
         String homeDirectory = System.getProperty("user.home");
-        final DriverManagerDataSource dataSource = new DriverManagerDataSource();
+        final HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName("heroes");
         dataSource.setDriverClassName(DRIVER_CLASS);
-        dataSource.setUrl("jdbc:derby:" + homeDirectory + "/.heroes/db");
+        dataSource.setJdbcUrl("jdbc:derby:" + homeDirectory + "/.heroes/db");
         dataSource.setUsername("");
         dataSource.setPassword("");
+        dataSource.setMetricRegistry(Metrics.globalRegistry);
         return dataSource;
     }
 
     @Bean
-    public LocalContainerEntityManagerFactoryBean entityManagerFactory() {
+    public LocalContainerEntityManagerFactoryBean entityManagerFactory(DataSource dataSource) {
         HibernateJpaVendorAdapter vendorAdapter = new HibernateJpaVendorAdapter();
         vendorAdapter.setGenerateDdl(true);
 //		vendorAdapter.setShowSql(true);
@@ -67,7 +83,18 @@ public class ServiceConfig {
         LocalContainerEntityManagerFactoryBean factory = new LocalContainerEntityManagerFactoryBean();
         factory.setJpaVendorAdapter(vendorAdapter);
         factory.setPackagesToScan(PERSISTENCE_PACKAGE);
-        factory.setDataSource(dataSource());
+        factory.setDataSource(dataSource);
+
+        Map<String, Object> jpaProperties = new HashMap<>();
+        // Compiled filter plans share criteria queries between requests, so copy them on execution.
+        jpaProperties.put("hibernate.criteria.copy_tree", true);
+        // Send inserts and updates in JDBC batches, grouped by statement.
+        jpaProperties.put("hibernate.jdbc.batch_size", 50);
+        jpaProperties.put("hibernate.order_inserts", true);
+        jpaProperties.put("hibernate.order_updates", true);
+        // Derby can't alter the increment of an existing sequence, so follow the database's.
+        jpaProperties.put("hibernate.id.sequence.increment_size_mismatch_strategy", "fix");
+        factory.setJpaPropertyMap(jpaProperties);
         return factory;
     }
 
@@ -15,17 +15,23 @@
  */
 package org.kathrynhuxtable.heroes.resources.controller;
 
-import java.util.Base64;
+import java.time.Duration;
 
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
 
 import org.kathrynhuxtable.heroes.service.AvatarService;
 import org.kathrynhuxtable.heroes.service.bean.Avatar;
+import org.kathrynhuxtable.heroes.service.bean.AvatarImage;
 
 /**
  * Avatar Service.
@@ -36,6 +42,16 @@ import org.kathrynhuxtable.heroes.service.bean.Avatar;
 @AllArgsConstructor
 public class AvatarController {
 
+	/**
+	 * How long an image requested by its content hash may be cached.
+	 */
+	private static final Duration VERSIONED_MAX_AGE = Duration.ofDays(365);
+
+	/**
+	 * How long an image requested without its content hash may be cached before revalidating.
+	 */
+	private static final Duration UNVERSIONED_MAX_AGE = Duration.ofHours(1);
+
 	private final AvatarService avatarService;
 
 	@GetMapping(path = "/data/{userId}", produces = "application/json")
@@ -43,13 +59,53 @@ public class AvatarController {
 		return avatarService.findAvatarByUserId(userId);
 	}
 
+	/**
+	 * Serve an avatar image, or one of its thumbnails, from the cache, with the content hash
+	 * as a strong ETag. Range requests are answered with the parts of the file asked for.
+	 * A request whose "v" parameter matches the hash is for content that can never change,
+	 * so it may be cached for a year; otherwise the image is cached briefly and revalidated.
+	 *
+	 * @param userId  the user whose avatar to serve.
+	 * @param size    the thumbnail size, if a thumbnail is wanted.
+	 * @param version the content hash the client expects, if any.
+	 * @param request the request, for its conditional headers.
+	 * @return the image, or 304 if the client's copy is current.
+	 */
 	@GetMapping(path = "/image/{userId}")
-	public @ResponseBody ResponseEntity<byte[]> imageByUsername(@PathVariable Long userId) {
-		Avatar avatar = avatarService.findAvatarByUserId(userId);
-		MediaType contentType = MediaType.parseMediaType(avatar.getMimeType());
+	public @ResponseBody ResponseEntity<Resource> imageByUsername(@PathVariable Long userId,
+			@RequestParam(name = "size", required = false) Integer size,
+			@RequestParam(name = "v", required = false) String version, WebRequest request) {
+		if (size != null && !avatarService.isThumbnailSize(size)) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "No avatar thumbnails of size " + size);
+		}
+		// Answer a conditional request from the type and hash, before reading the image.
+		AvatarImage avatar = avatarService.findImageByUserId(userId, size);
+		if (avatar == null) {
+			throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No avatar for user " + userId);
+		}
+		if (request.checkNotModified(eTag(avatar))) {
+			return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+					.cacheControl(cacheControl(avatar, version))
+					.build();
+		}
+		avatar = avatarService.readImage(userId, avatar);
+		// The message converter sets the length, and copies the bytes, or the ranges asked
+		// for, from the cached direct buffer.
 		return ResponseEntity.ok()
-				.contentType(contentType)
-				.body(Base64.getDecoder().decode(avatar.getAvatar()));
+				.contentType(MediaType.parseMediaType(avatar.getMimeType()))
+				.eTag(eTag(avatar))
+				.cacheControl(cacheControl(avatar, version))
+				.body(new ByteBufferResource(avatar.getData(), "Avatar of user " + userId));
+	}
+
+	private static String eTag(AvatarImage avatar) {
+		return '"' + avatar.getHash() + (avatar.getSize() == null ? "" : "-" + avatar.getSize()) + '"';
+	}
 
+	private static CacheControl cacheControl(AvatarImage avatar, String version) {
+		if (avatar.getHash().equals(version)) {
+			return CacheControl.maxAge(VERSIONED_MAX_AGE).cachePublic().immutable();
+		}
+		return CacheControl.maxAge(UNVERSIONED_MAX_AGE).cachePublic().mustRevalidate();
 	}
-}
\ No newline at end of file
+}
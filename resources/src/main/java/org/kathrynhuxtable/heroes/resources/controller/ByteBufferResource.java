@@ -0,0 +1,98 @@
+/*
+ * Copyright 2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.heroes.resources.controller;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import org.springframework.core.io.AbstractResource;
+
+/**
+ * A Resource over the bytes of a buffer, so that a response body, or the ranges of it a
+ * request asks for, are copied straight from a direct buffer to the response.
+ */
+class ByteBufferResource extends AbstractResource {
+
+	private final ByteBuffer buffer;
+	private final String description;
+
+	/**
+	 * Construct a ByteBufferResource.
+	 *
+	 * @param buffer      the bytes from its position to its limit, which are not modified.
+	 * @param description a description for messages.
+	 */
+	ByteBufferResource(ByteBuffer buffer, String description) {
+		this.buffer = buffer;
+		this.description = description;
+	}
+
+	@Override
+	public String getDescription() {
+		return description;
+	}
+
+	@Override
+	public long contentLength() {
+		return buffer.remaining();
+	}
+
+	@Override
+	public InputStream getInputStream() {
+		ByteBuffer bytes = buffer.duplicate();
+		return new InputStream() {
+
+			@Override
+			public int read() {
+				return bytes.hasRemaining() ? bytes.get() & 0xff : -1;
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) {
+				if (len == 0) {
+					return 0;
+				} else if (!bytes.hasRemaining()) {
+					return -1;
+				}
+				int count = Math.min(len, bytes.remaining());
+				bytes.get(b, off, count);
+				return count;
+			}
+
+			@Override
+			public long skip(long n) {
+				int count = (int) Math.max(0, Math.min(n, bytes.remaining()));
+				bytes.position(bytes.position() + count);
+				return count;
+			}
+
+			@Override
+			public int available() {
+				return bytes.remaining();
+			}
+		};
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		return this == other;
+	}
+
+	@Override
+	public int hashCode() {
+		return System.identityHashCode(this);
+	}
+}
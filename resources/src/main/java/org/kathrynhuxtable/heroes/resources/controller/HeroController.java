@@ -15,15 +15,40 @@
  */
 package org.kathrynhuxtable.heroes.resources.controller;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
-import lombok.AllArgsConstructor;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import org.kathrynhuxtable.heroes.service.HeroService;
 import org.kathrynhuxtable.heroes.service.bean.Hero;
+import org.kathrynhuxtable.heroes.service.bean.HeroBatchResult;
+import org.kathrynhuxtable.heroes.service.bean.HeroBulkResult;
+import org.kathrynhuxtable.heroes.service.bean.HeroBulkUpdate;
 import org.kathrynhuxtable.heroes.service.bean.UIFilterResult;
 import org.kathrynhuxtable.heroes.uifilter.bean.UIFilter;
 
@@ -33,10 +58,35 @@ import org.kathrynhuxtable.heroes.uifilter.bean.UIFilter;
 @Slf4j
 @Controller
 @RequestMapping("hero")
-@AllArgsConstructor
 public class HeroController {
 
+	/**
+	 * The formats supported by the export.
+	 */
+	public enum ExportFormat {
+		ndjson("application/x-ndjson"),
+		csv("text/csv");
+
+		private final String mediaType;
+
+		ExportFormat(String mediaType) {
+			this.mediaType = mediaType;
+		}
+	}
+
+	private static final int MAXIMUM_TOP_HEROES = 1000;
+
 	private HeroService heroService;
+	private ObjectMapper objectMapper;
+	private ObjectWriter sparseWriter;
+
+	public HeroController(HeroService heroService, ObjectMapper objectMapper) {
+		this.heroService = heroService;
+		this.objectMapper = objectMapper;
+		this.sparseWriter = objectMapper.copy()
+				.addMixIn(Hero.class, SparseHero.class)
+				.writerFor(new TypeReference<UIFilterResult<Hero>>() {});
+	}
 
 	@GetMapping(path = "/search", produces = "application/json")
 	public @ResponseBody List<Hero> search(@RequestParam(name = "name") String name) {
@@ -44,22 +94,77 @@ public class HeroController {
 	}
 
 	@GetMapping(path = "/top", produces = "application/json")
-	public @ResponseBody List<Hero> findTopHeroes() {
-		return heroService.findTopHeroes();
+	public @ResponseBody List<Hero> findTopHeroes(@RequestParam(name = "count", defaultValue = "5") int count) {
+		return heroService.findTopHeroes(Math.max(0, Math.min(count, MAXIMUM_TOP_HEROES)));
 	}
 
+	/**
+	 * Find a Hero, with its version as the ETag. A request whose If-None-Match holds the
+	 * current version gets 304 Not Modified.
+	 */
 	@GetMapping(path = "/{id}", produces = "application/json")
-	public @ResponseBody Hero find(@PathVariable int id) {
-		return heroService.find(id);
+	public ResponseEntity<Hero> find(@PathVariable int id) {
+		return withETag(heroService.find(id));
+	}
+
+	/**
+	 * Find the position of a Hero by rating, starting at 1 for the top rated Hero.
+	 * Heroes without a rating have no rank.
+	 */
+	@GetMapping(path = "/{id}/rank", produces = "application/json")
+	public ResponseEntity<Integer> findRank(@PathVariable int id) {
+		Integer rank = heroService.findRank(id);
+		return rank == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(rank);
 	}
 
+	/**
+	 * Find the Heroes matching a filter. When the filter requests only some fields, the
+	 * fields it didn't request are left out of each Hero rather than written as null.
+	 */
 	@PostMapping(path = "/filter", produces = "application/json")
-	public @ResponseBody UIFilterResult<Hero> filterFind(@RequestBody UIFilter filter) {
-		return heroService.find(filter);
+	public ResponseEntity<Object> filterFind(@RequestBody UIFilter filter) throws IOException {
+		UIFilterResult<Hero> result = heroService.find(filter);
+		if (filter.getFields() == null || filter.getFields().isEmpty()) {
+			return ResponseEntity.ok(result);
+		}
+		return ResponseEntity.ok()
+				.contentType(MediaType.APPLICATION_JSON)
+				.body(sparseWriter.writeValueAsBytes(result));
 	}
 
+	/**
+	 * Export every Hero matching a filter, ignoring pagination. Rows are written as they
+	 * are read, either as one JSON object per line or as CSV.
+	 */
+	@PostMapping(path = "/export")
+	public ResponseEntity<StreamingResponseBody> export(@RequestBody UIFilter filter,
+	                                                    @RequestParam(name = "format", defaultValue = "ndjson") ExportFormat format) {
+		// Check the filter now, since an error can't be reported once the response has started.
+		heroService.validateExport(filter);
+
+		StreamingResponseBody body = out -> {
+			Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+			if (format == ExportFormat.csv) {
+				writeCsv(filter, writer);
+			} else {
+				writeNdjson(filter, writer);
+			}
+			writer.flush();
+		};
+		return ResponseEntity.ok()
+				.contentType(MediaType.parseMediaType(format.mediaType))
+				.header(HttpHeaders.CONTENT_DISPOSITION,
+						ContentDisposition.attachment().filename("heroes." + format.name()).build().toString())
+				.body(body);
+	}
+
+	/**
+	 * Save a new Hero, or update an existing one. An update with an If-Match header is
+	 * only made if the Hero is still at that version, and otherwise fails with 412.
+	 */
 	@PutMapping
-	public @ResponseBody Hero save(@RequestBody Hero newHero) {
+	public ResponseEntity<Hero> save(@RequestBody Hero newHero,
+	                                 @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
 		Hero hero;
 		if (newHero.getId() == null) {
 			hero = heroService.save(newHero);
@@ -67,21 +172,162 @@ public class HeroController {
 			newHero.setId(null);
 			hero = heroService.save(newHero);
 		} else {
-			hero = heroService.find(newHero.getId());
-			if (hero != null) {
-				hero.setName(newHero.getName());
-				hero.setPower(newHero.getPower());
-				hero.setAlterEgo(newHero.getAlterEgo());
-				hero.setRating(newHero.getRating());
-				hero.setPowerDate(newHero.getPowerDate());
-				hero = heroService.update(hero);
-			}
+			hero = heroService.update(newHero, toVersion(ifMatch));
+		}
+		return withETag(hero);
+	}
+
+	/**
+	 * Change only the fields present in the request body, with a single UPDATE. A field
+	 * set to null is cleared. As for a save, If-Match makes the change conditional.
+	 */
+	@PatchMapping(path = "/{id}", consumes = "application/json", produces = "application/json")
+	public ResponseEntity<Hero> patch(@PathVariable int id, @RequestBody Map<String, Object> changes,
+	                                  @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+		Hero hero = heroService.patch(id, toChanges(changes), changes.keySet(), toVersion(ifMatch));
+		return hero == null ? ResponseEntity.notFound().build() : withETag(hero);
+	}
+
+	/**
+	 * Change the fields present in the changes of every Hero matching the filter, with a
+	 * single UPDATE. Returns the number of Heroes changed.
+	 */
+	@PatchMapping(path = "/filter", consumes = "application/json", produces = "application/json")
+	public @ResponseBody HeroBulkResult updateByFilter(@RequestBody HeroBulkUpdate update) {
+		if (update.getFilter() == null || update.getChanges() == null) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "A filter and changes are required");
 		}
-		return hero;
+		Map<String, Object> changes = update.getChanges();
+		return new HeroBulkResult(heroService.updateByFilter(update.getFilter(), toChanges(changes), changes.keySet()));
+	}
+
+	/**
+	 * Delete every Hero matching the filter, with a single DELETE. Returns the number of
+	 * Heroes deleted.
+	 */
+	@DeleteMapping(path = "/filter", consumes = "application/json", produces = "application/json")
+	public @ResponseBody HeroBulkResult deleteByFilter(@RequestBody UIFilter filter) {
+		return new HeroBulkResult(heroService.deleteByFilter(filter));
+	}
+
+	/**
+	 * Save or update many Heroes at once, as the single save does each one. The outcome of
+	 * each Hero is returned in request order, so one bad chunk does not fail the rest.
+	 */
+	@PutMapping(path = "/batch", produces = "application/json")
+	public @ResponseBody List<HeroBatchResult> saveAll(@RequestBody List<Hero> heroes) {
+		return heroService.saveAll(heroes);
 	}
 
 	@DeleteMapping(path = "/{id}", produces = "application/json")
 	public @ResponseBody Hero delete(@PathVariable int id) {
 		return heroService.delete(id);
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Return a Hero with its version as a strong ETag. A missing Hero is returned as an
+	 * empty body, as it always has been.
+	 */
+	private static ResponseEntity<Hero> withETag(Hero hero) {
+		if (hero == null || hero.getVersion() == null) {
+			return ResponseEntity.ok(hero);
+		}
+		return ResponseEntity.ok().eTag('"' + hero.getVersion().toString() + '"').body(hero);
+	}
+
+	/**
+	 * Find the version an If-Match header expects. A weak or malformed ETag can't match
+	 * any version, so the request fails as stale.
+	 *
+	 * @param ifMatch the If-Match header, or {@code null}.
+	 * @return the version, or {@code null} if any version matches.
+	 */
+	private static Long toVersion(String ifMatch) {
+		if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+			return null;
+		}
+		String tag = ifMatch.trim();
+		try {
+			if (tag.length() > 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+				return Long.valueOf(tag.substring(1, tag.length() - 1));
+			}
+		} catch (NumberFormatException e) {
+			// Fall through.
+		}
+		throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "If-Match does not match the Hero: " + tag);
+	}
+
+	/**
+	 * Check the names of patched fields, and convert their values as the whole Hero would be.
+	 */
+	private Hero toChanges(Map<String, Object> changes) {
+		Set<String> unknown = new TreeSet<>(changes.keySet());
+		unknown.removeAll(HeroService.PATCHABLE_FIELDS);
+		if (!unknown.isEmpty()) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Fields cannot be patched: " + unknown);
+		}
+		try {
+			return objectMapper.convertValue(changes, Hero.class);
+		} catch (IllegalArgumentException e) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid field value", e);
+		}
+	}
+
+	/**
+	 * Mix-in for the Heroes of a sparse fieldset, leaving out the fields not requested.
+	 */
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	private abstract static class SparseHero {
+	}
+
+	private void writeNdjson(UIFilter filter, Writer writer) throws IOException {
+		// Flush once at the end rather than after every row.
+		ObjectWriter heroWriter = objectMapper.writerFor(Hero.class)
+				.without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+		try (JsonGenerator generator = objectMapper.getFactory().createGenerator(writer)) {
+			// Leave the writer open, so the caller can flush it.
+			generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+			heroService.export(filter, hero -> {
+				try {
+					heroWriter.writeValue(generator, hero);
+					generator.writeRaw('\n');
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		}
+	}
+
+	private void writeCsv(UIFilter filter, Writer writer) throws IOException {
+		writer.write("id,name,power,alterEgo,rating,powerDate\r\n");
+		heroService.export(filter, hero -> {
+			try {
+				writer.write(String.valueOf(hero.getId()));
+				writer.write(',');
+				writer.write(csvValue(hero.getName()));
+				writer.write(',');
+				writer.write(csvValue(hero.getPower()));
+				writer.write(',');
+				writer.write(csvValue(hero.getAlterEgo()));
+				writer.write(',');
+				writer.write(hero.getRating() == null ? "" : hero.getRating().toString());
+				writer.write(',');
+				writer.write(csvValue(hero.getPowerDate()));
+				writer.write("\r\n");
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+	}
+
+	private static String csvValue(Object value) {
+		if (value == null) {
+			return "";
+		}
+		String s = value instanceof Date date ? date.toInstant().toString() : value.toString();
+		if (s.indexOf(',') >= 0 || s.indexOf('"') >= 0 || s.indexOf('\n') >= 0 || s.indexOf('\r') >= 0) {
+			return '"' + s.replace("\"", "\"\"") + '"';
+		}
+		return s;
+	}
+}
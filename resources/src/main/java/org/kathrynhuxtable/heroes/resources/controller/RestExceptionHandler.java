@@ -0,0 +1,58 @@
+/*
+ * Copyright 2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.heroes.resources.controller;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ProblemDetail;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import org.kathrynhuxtable.heroes.uifilter.FilterBudgetException;
+import org.kathrynhuxtable.heroes.uifilter.InvalidFilterException;
+
+/**
+ * Maps service exceptions to HTTP responses.
+ */
+@Slf4j
+@ControllerAdvice
+public class RestExceptionHandler {
+
+	@ExceptionHandler(InvalidFilterException.class)
+	public @ResponseBody ProblemDetail handleInvalidFilter(InvalidFilterException e) {
+		log.info("Rejected filter: " + e.getMessage());
+		return ProblemDetail.forStatusAndDetail(HttpStatus.BAD_REQUEST, e.getMessage());
+	}
+
+	@ExceptionHandler(FilterBudgetException.class)
+	public @ResponseBody ProblemDetail handleFilterBudget(FilterBudgetException e) {
+		log.info("Filter exceeded the query budget: " + e.getMessage());
+		ProblemDetail problem = ProblemDetail.forStatusAndDetail(HttpStatus.UNPROCESSABLE_ENTITY, e.getMessage());
+		problem.setTitle("Query budget exceeded");
+		problem.setProperty("limit", e.getLimit());
+		return problem;
+	}
+
+	@ExceptionHandler(OptimisticLockingFailureException.class)
+	public @ResponseBody ProblemDetail handleOptimisticLockingFailure(OptimisticLockingFailureException e) {
+		log.info("Rejected stale write: " + e.getMessage());
+		ProblemDetail problem = ProblemDetail.forStatusAndDetail(HttpStatus.PRECONDITION_FAILED, e.getMessage());
+		problem.setTitle("Changed since read");
+		return problem;
+	}
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.heroes.service;
+
+import java.sql.*;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.hibernate.jdbc.ReturningWork;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Moves avatar images out of the database at startup. Databases created before the
+ * AvatarStore kept each image in the AVATAR column of the AVATAR table, which AvatarDO
+ * no longer maps. Each image is written to the store and its hash recorded, then the
+ * column is dropped, releasing its pages. Once the column is gone this does nothing.
+ * <p>
+ * This runs once all the singletons are created, which is before the web server starts,
+ * so no request can find an avatar that has not been moved yet. The images are moved in
+ * chunks, each in its own transaction, so that no transaction holds locks on the whole
+ * table. The column is dropped in a last transaction.
+ * </p>
+ * <p>
+ * The images are written to the store before their chunk commits. If it rolls back, they
+ * are written again on the next start, which the content addressing makes harmless.
+ * </p>
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AvatarBlobMigration implements SmartInitializingSingleton {
+
+	private static final String SCHEMA = "APP";
+	private static final String TABLE = "AVATAR";
+	private static final String BLOB_COLUMN = "AVATAR";
+	private static final int CHUNK_SIZE = 100;
+
+	private final AvatarStore avatarStore;
+	private final PlatformTransactionManager transactionManager;
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	@Override
+	public void afterSingletonsInstantiated() {
+		TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+		if (!Boolean.TRUE.equals(transaction.execute(status -> doWork(AvatarBlobMigration::hasBlobColumn)))) {
+			return;
+		}
+
+		int moved = 0;
+		Integer chunk;
+		while ((chunk = transaction.execute(status -> doWork(this::moveChunk))) != null && chunk > 0) {
+			moved += chunk;
+		}
+
+		transaction.executeWithoutResult(status -> doWork(connection -> {
+			try (Statement drop = connection.createStatement()) {
+				return drop.executeUpdate("ALTER TABLE APP.AVATAR DROP COLUMN AVATAR");
+			}
+		}));
+		log.info("Moved " + moved + " avatar images from the database to the avatar store");
+	}
+
+	private <T> T doWork(ReturningWork<T> work) {
+		return entityManager.unwrap(Session.class).doReturningWork(work);
+	}
+
+	/**
+	 * Move the images of the next chunk of avatars, in the current transaction.
+	 *
+	 * @return the number of images moved, or zero if none are left.
+	 */
+	private int moveChunk(Connection connection) throws SQLException {
+		// Read the ids first, so that no cursor is open on the rows being updated.
+		long[] ids = new long[CHUNK_SIZE];
+		int count = 0;
+		try (Statement select = connection.createStatement();
+		     ResultSet rows = select.executeQuery(
+				     "SELECT ID FROM APP.AVATAR WHERE AVATAR IS NOT NULL FETCH FIRST " + CHUNK_SIZE + " ROWS ONLY")) {
+			while (rows.next()) {
+				ids[count++] = rows.getLong(1);
+			}
+		}
+
+		try (PreparedStatement select = connection.prepareStatement("SELECT AVATAR FROM APP.AVATAR WHERE ID = ?");
+		     PreparedStatement update = connection.prepareStatement(
+				     "UPDATE APP.AVATAR SET HASH = ?, AVATAR = NULL WHERE ID = ?")) {
+			for (int i = 0; i < count; i++) {
+				byte[] image;
+				select.setLong(1, ids[i]);
+				try (ResultSet row = select.executeQuery()) {
+					row.next();
+					image = row.getBytes(1);
+				}
+				update.setString(1, avatarStore.store(image));
+				update.setLong(2, ids[i]);
+				update.executeUpdate();
+			}
+		}
+		return count;
+	}
+
+	private static boolean hasBlobColumn(Connection connection) throws SQLException {
+		try (ResultSet columns = connection.getMetaData().getColumns(null, SCHEMA, TABLE, BLOB_COLUMN)) {
+			return columns.next();
+		}
+	}
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.heroes.service;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import org.kathrynhuxtable.heroes.service.bean.AvatarImage;
+
+/**
+ * A cache of avatar images by user and thumbnail size, whose bytes are held off the heap
+ * in direct buffers, so that serving the most requested images neither reads the store
+ * nor churns the young generation.
+ * <p>
+ * The cache is bounded by the total size of the images in bytes, with Caffeine's
+ * eviction, and entries expire a fixed time after they are loaded, which bounds how long
+ * an avatar changed elsewhere can go unseen. AvatarService invalidates a user's images
+ * when it changes their avatar. Statistics are published to Micrometer as
+ * {@code heroes.avatar.cache}, along with its size in bytes.
+ * </p>
+ * <p>
+ * An evicted buffer's memory is released when the buffer is collected, so the JVM's
+ * maximum direct memory must allow for more than the cache's maximum weight.
+ * </p>
+ */
+@Component
+public class AvatarImageCache {
+
+	/**
+	 * The key of a cached image. The size is 0 for the original image, which is also cached
+	 * in place of a thumbnail that is missing.
+	 */
+	private record Key(long userId, int size) {
+	}
+
+	private final Cache<Key, AvatarImage> images;
+	private final int[] thumbnailSizes;
+
+	/**
+	 * Construct an AvatarImageCache.
+	 *
+	 * @param avatarStore             the store, for the thumbnail sizes.
+	 * @param maximumWeight           the maximum total size of the cached images, in bytes.
+	 * @param expireAfterWriteSeconds how long an image is kept after it is loaded.
+	 */
+	public AvatarImageCache(AvatarStore avatarStore,
+	                        @Value("${heroes.avatar-cache.maximum-weight:33554432}") long maximumWeight,
+	                        @Value("${heroes.avatar-cache.expire-after-write-seconds:600}") long expireAfterWriteSeconds) {
+		this.thumbnailSizes = avatarStore.getThumbnailSizes();
+		this.images = Caffeine.newBuilder()
+				.maximumWeight(maximumWeight)
+				.weigher((Key key, AvatarImage image) -> image.getData().capacity())
+				.expireAfterWrite(Duration.ofSeconds(expireAfterWriteSeconds))
+				.recordStats()
+				.build();
+		CaffeineCacheMetrics.monitor(Metrics.globalRegistry, images, "heroes.avatar.cache");
+		Gauge.builder("heroes.avatar.cache.weight", images,
+						cache -> cache.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L))
+				.description("Size of the cached avatar images, off the heap")
+				.baseUnit("bytes")
+				.register(Metrics.globalRegistry);
+	}
+
+	/**
+	 * Find an image if it is cached.
+	 *
+	 * @param userId the user.
+	 * @param size   the thumbnail size, or {@code null} for the original image.
+	 * @return the image, with a buffer of its own over the shared bytes, or {@code null}
+	 *         if it is not cached.
+	 */
+	public AvatarImage getIfPresent(long userId, Integer size) {
+		return duplicate(images.getIfPresent(new Key(userId, size == null ? 0 : size)));
+	}
+
+	/**
+	 * Find an image, loading it if not cached. Images that are not found are not cached.
+	 * The load is atomic with respect to invalidation, so an image loaded before its
+	 * user's avatar changed is never cached after the change.
+	 *
+	 * @param userId the user.
+	 * @param size   the thumbnail size, or {@code null} for the original image.
+	 * @param loader loads the image into a direct buffer on a miss, returning {@code null}
+	 *               if there is none.
+	 * @return the image, with a buffer of its own over the shared bytes, or {@code null}
+	 *         if there is none.
+	 */
+	public AvatarImage get(long userId, Integer size, Supplier<AvatarImage> loader) {
+		return duplicate(images.get(new Key(userId, size == null ? 0 : size), key -> loader.get()));
+	}
+
+	/**
+	 * Invalidate a user's image and thumbnails. Must be called after the user's avatar is
+	 * changed, once the change can be read. Waits for any load of them in progress.
+	 *
+	 * @param userId the user.
+	 */
+	public void invalidate(long userId) {
+		images.invalidate(new Key(userId, 0));
+		for (int size : thumbnailSizes) {
+			images.invalidate(new Key(userId, size));
+		}
+	}
+
+	/**
+	 * Copy an image with a buffer of its own, so that each caller reads from its own
+	 * position and limit.
+	 */
+	private static AvatarImage duplicate(AvatarImage image) {
+		return image == null ? null : image.toBuilder().data(image.getData().duplicate()).build();
+	}
+}
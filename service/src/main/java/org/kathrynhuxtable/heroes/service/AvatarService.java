@@ -20,13 +20,19 @@ import java.util.Base64;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import org.kathrynhuxtable.heroes.service.bean.Avatar;
+import org.kathrynhuxtable.heroes.service.bean.AvatarImage;
 import org.kathrynhuxtable.heroes.service.persistence.AvatarDAO;
 import org.kathrynhuxtable.heroes.service.persistence.domain.AvatarDO;
 
 /**
  * The Avatar Service. Provides an API for finding avatars and eventually updating them.
+ * Images are kept in the AvatarStore, and found either as Base64 in JSON, or off the
+ * heap to be served directly.
  */
 @Slf4j
 @Component
@@ -34,6 +40,9 @@ import org.kathrynhuxtable.heroes.service.persistence.domain.AvatarDO;
 public class AvatarService {
 
 	private final AvatarDAO avatarDao;
+	private final AvatarStore avatarStore;
+	private final AvatarImageCache avatarImageCache;
+	private final ReadTransactions readTransactions;
 
 	/**
 	 * Find an Avatar by userId.
@@ -42,7 +51,96 @@ public class AvatarService {
 	 * @return the Avatar matching the userIdd, or {@code null} if no match.
 	 */
 	public Avatar findAvatarByUserId(long userId) {
-		return toAvatar(avatarDao.findByUserId(userId));
+		return toAvatar(readTransactions.read(() -> avatarDao.findByUserId(userId)));
+	}
+
+	/**
+	 * Find the type and content hash of a user's avatar image, or of one of its thumbnails,
+	 * without reading the image unless it is cached, so that a conditional request can be
+	 * answered cheaply. An image that can't be decoded has no thumbnails, so the original
+	 * is found instead.
+	 *
+	 * @param userId the userId to match.
+	 * @param size   the thumbnail size, or {@code null} for the original image.
+	 * @return the AvatarImage, with its bytes if they are cached, or {@code null} if no match.
+	 */
+	public AvatarImage findImageByUserId(long userId, Integer size) {
+		AvatarImage cached = avatarImageCache.getIfPresent(userId, size);
+		if (cached != null) {
+			return cached;
+		}
+		AvatarDO avatar = readTransactions.read(() -> avatarDao.findByUserId(userId));
+		if (avatar == null || avatar.getHash() == null) {
+			return null;
+		}
+		if (size != null && avatarStore.findThumbnail(avatar.getHash(), size) != null) {
+			return AvatarImage.builder()
+					.mimeType(AvatarStore.THUMBNAIL_MIME_TYPE)
+					.hash(avatar.getHash())
+					.size(size)
+					.build();
+		}
+		return AvatarImage.builder()
+				.mimeType(avatar.getMimeType())
+				.hash(avatar.getHash())
+				.build();
+	}
+
+	/**
+	 * Read the bytes of an image found by {@link #findImageByUserId}, off the heap, from the
+	 * cache if they are there. The image is cached by the size it was found at, so a missing
+	 * thumbnail shares the original's entry.
+	 *
+	 * @param userId the user.
+	 * @param image  the image found.
+	 * @return the image with its bytes, which may be newer than the image found.
+	 */
+	public AvatarImage readImage(long userId, AvatarImage image) {
+		if (image.getData() != null) {
+			return image;
+		}
+		return avatarImageCache.get(userId, image.getSize(), () -> image.toBuilder()
+				.data(avatarStore.readDirect(image.getSize() == null
+						? avatarStore.path(image.getHash())
+						: avatarStore.findThumbnail(image.getHash(), image.getSize())))
+				.build());
+	}
+
+	/**
+	 * Whether thumbnails of avatars are made at a size.
+	 *
+	 * @param size the width and height in pixels.
+	 * @return {@code true} if thumbnails are made at the size.
+	 */
+	public boolean isThumbnailSize(int size) {
+		return avatarStore.isThumbnailSize(size);
+	}
+
+	/**
+	 * Set a user's avatar. The image and its thumbnails are written to the AvatarStore
+	 * first, and only the hash is saved in the database. The user's cached images are
+	 * invalidated once the change commits.
+	 *
+	 * @param userId   the user.
+	 * @param mimeType the MIME type of the image.
+	 * @param image    the image bytes.
+	 */
+	@Transactional
+	public void saveAvatar(long userId, String mimeType, byte[] image) {
+		String hash = avatarStore.store(image);
+		AvatarDO avatar = avatarDao.findByUserId(userId);
+		if (avatar == null) {
+			avatar = AvatarDO.builder().userId(userId).build();
+		}
+		avatar.setMimeType(mimeType);
+		avatar.setHash(hash);
+		avatarDao.save(avatar);
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCommit() {
+				avatarImageCache.invalidate(userId);
+			}
+		});
 	}
 
 	/**
@@ -52,14 +150,15 @@ public class AvatarService {
 	 * @return an Avatar object.
 	 */
 	private Avatar toAvatar(AvatarDO avatar) {
-		if (avatar == null) {
+		if (avatar == null || avatar.getHash() == null) {
 			return null;
 		} else {
 			return Avatar.builder()
 					.id(avatar.getId())
 					.userId(avatar.getUserId())
 					.mimeType(avatar.getMimeType())
-					.avatar(Base64.getEncoder().encodeToString(avatar.getAvatar()))
+					.avatar(Base64.getEncoder().encodeToString(avatarStore.read(avatar.getHash())))
+					.hash(avatar.getHash())
 					.build();
 		}
 	}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.heroes.service;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.regex.Pattern;
+import javax.imageio.ImageIO;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps avatar images in a directory on local disk, each named by the SHA-256 of its
+ * content, so that the database holds only the hash and an image is written once however
+ * many avatars share it. Thumbnails of the configured sizes are written with the image,
+ * as PNG, so that they are never scaled while serving.
+ * <p>
+ * An image is stored as {@code <directory>/<first two hash digits>/<hash>}, and its
+ * thumbnails beside it as {@code <hash>-<size>.png}. Files are written to a temporary
+ * name and moved into place, so a reader never sees a partial file.
+ * </p>
+ */
+@Slf4j
+@Component
+public class AvatarStore {
+
+	/**
+	 * The MIME type of every thumbnail.
+	 */
+	public static final String THUMBNAIL_MIME_TYPE = "image/png";
+
+	private static final Pattern HASH = Pattern.compile("[0-9a-f]{64}");
+
+	private final Path directory;
+	private final int[] thumbnailSizes;
+
+	public AvatarStore(@Value("${heroes.avatar-store.directory:${user.home}/.heroes/avatars}") String directory,
+	                   @Value("${heroes.avatar-store.thumbnail-sizes:32,64}") int[] thumbnailSizes) {
+		this.directory = Path.of(directory);
+		this.thumbnailSizes = thumbnailSizes.clone();
+		Arrays.sort(this.thumbnailSizes);
+	}
+
+	/**
+	 * Store an image and its thumbnails, unless an identical image is already stored.
+	 *
+	 * @param image the image bytes.
+	 * @return the hash naming the image.
+	 */
+	public String store(byte[] image) {
+		String hash = hashOf(image);
+		try {
+			Path path = path(hash);
+			if (Files.notExists(path)) {
+				Files.createDirectories(path.getParent());
+				write(path, image);
+			}
+			for (int size : thumbnailSizes) {
+				Path thumbnailPath = thumbnailPath(hash, size);
+				if (Files.notExists(thumbnailPath)) {
+					byte[] thumbnail = thumbnail(image, size);
+					if (thumbnail == null) {
+						log.warn("Avatar image " + hash + " can't be decoded, so has no thumbnails");
+						break;
+					}
+					write(thumbnailPath, thumbnail);
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Unable to store avatar image " + hash, e);
+		}
+		return hash;
+	}
+
+	/**
+	 * Read a stored image.
+	 *
+	 * @param hash the hash naming the image.
+	 * @return the image bytes.
+	 */
+	public byte[] read(String hash) {
+		try {
+			return Files.readAllBytes(path(hash));
+		} catch (IOException e) {
+			throw new UncheckedIOException("Unable to read avatar image " + hash, e);
+		}
+	}
+
+	/**
+	 * Read a stored image or thumbnail into a direct buffer, so that its bytes never pass
+	 * through the heap.
+	 *
+	 * @param file the file of the image, from {@link #path} or {@link #findThumbnail}.
+	 * @return a read-only direct buffer holding the file.
+	 */
+	public ByteBuffer readDirect(Path file) {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			ByteBuffer buffer = ByteBuffer.allocateDirect(Math.toIntExact(channel.size()));
+			while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+				// Keep reading until the buffer is full.
+			}
+			return buffer.flip().asReadOnlyBuffer();
+		} catch (IOException e) {
+			throw new UncheckedIOException("Unable to read avatar image " + file, e);
+		}
+	}
+
+	/**
+	 * Find the file of an image.
+	 *
+	 * @param hash the hash naming the image.
+	 * @return the path of the image file.
+	 */
+	public Path path(String hash) {
+		if (hash == null || !HASH.matcher(hash).matches()) {
+			throw new IllegalArgumentException("Invalid avatar hash " + hash);
+		}
+		return directory.resolve(hash.substring(0, 2)).resolve(hash);
+	}
+
+	/**
+	 * Find the file of a thumbnail of an image, if it has one.
+	 *
+	 * @param hash the hash naming the image.
+	 * @param size the thumbnail size, which must be one of the configured sizes.
+	 * @return the path of the thumbnail file, or {@code null} if the image has no thumbnails.
+	 */
+	public Path findThumbnail(String hash, int size) {
+		Path path = thumbnailPath(hash, size);
+		return Files.exists(path) ? path : null;
+	}
+
+	/**
+	 * Whether thumbnails are made at a size.
+	 *
+	 * @param size the width and height in pixels.
+	 * @return {@code true} if the size is one of the configured sizes.
+	 */
+	public boolean isThumbnailSize(int size) {
+		return Arrays.binarySearch(thumbnailSizes, size) >= 0;
+	}
+
+	/**
+	 * Find the sizes thumbnails are made at.
+	 *
+	 * @return the widths and heights in pixels, in ascending order.
+	 */
+	public int[] getThumbnailSizes() {
+		return thumbnailSizes.clone();
+	}
+
+	/**
+	 * Compute the content hash of an image, as a SHA-256 hex string.
+	 *
+	 * @param image the image bytes.
+	 * @return the hash.
+	 */
+	public static String hashOf(byte[] image) {
+		try {
+			return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(image));
+		} catch (NoSuchAlgorithmException e) {
+			// Every Java platform is required to support SHA-256.
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private Path thumbnailPath(String hash, int size) {
+		return path(hash).resolveSibling(hash + "-" + size + ".png");
+	}
+
+	/**
+	 * Write a file under a temporary name, then move it into place.
+	 */
+	private static void write(Path path, byte[] content) throws IOException {
+		Path temp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+		try {
+			Files.write(temp, content);
+			Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/**
+	 * Scale an image so that its longer side is at most the size, keeping its proportions.
+	 *
+	 * @return the thumbnail as PNG, or {@code null} if the image can't be decoded.
+	 */
+	private static byte[] thumbnail(byte[] image, int size) throws IOException {
+		BufferedImage source = ImageIO.read(new ByteArrayInputStream(image));
+		if (source == null) {
+			return null;
+		}
+		double scale = Math.min(1.0, (double) size / Math.max(source.getWidth(), source.getHeight()));
+		int width = Math.max(1, (int) Math.round(source.getWidth() * scale));
+		int height = Math.max(1, (int) Math.round(source.getHeight() * scale));
+
+		BufferedImage thumbnail = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D graphics = thumbnail.createGraphics();
+		try {
+			graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+			graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+			graphics.drawImage(source, 0, 0, width, height, null);
+		} finally {
+			graphics.dispose();
+		}
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ImageIO.write(thumbnail, "png", out);
+		return out.toByteArray();
+	}
+}
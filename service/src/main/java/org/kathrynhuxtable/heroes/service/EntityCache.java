@@ -0,0 +1,119 @@
+/*
+ * Copyright 2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.heroes.service;
+
+import java.time.Duration;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * A near cache of transfer objects looked up by a key, in front of the database.
+ * <p>
+ * The cache is bounded, with Caffeine's TinyLFU eviction, and entries expire a fixed
+ * time after they are written, which bounds how long a change made elsewhere can go
+ * unseen. Services write changed objects through to the cache and invalidate deleted
+ * ones. Statistics are published to Micrometer under the cache's name.
+ * </p>
+ * <p>
+ * Callers may modify the objects they are given, so objects are copied on the way in
+ * and on the way out.
+ * </p>
+ *
+ * @param <K> the type of the key.
+ * @param <V> the type of the cached objects.
+ */
+public class EntityCache<K, V> {
+
+	private final Cache<K, V> cache;
+	private final UnaryOperator<V> copier;
+
+	/**
+	 * Construct an EntityCache.
+	 *
+	 * @param name             the name of the cache in the metrics.
+	 * @param maximumSize      the maximum number of objects to keep.
+	 * @param expireAfterWrite how long an object is kept after it is written.
+	 * @param copier           copies a cached object.
+	 */
+	public EntityCache(String name, long maximumSize, Duration expireAfterWrite, UnaryOperator<V> copier) {
+		this.cache = Caffeine.newBuilder()
+				.maximumSize(maximumSize)
+				.expireAfterWrite(expireAfterWrite)
+				.recordStats()
+				.build();
+		this.copier = copier;
+		CaffeineCacheMetrics.monitor(Metrics.globalRegistry, cache, name);
+	}
+
+	/**
+	 * Find an object, loading it if not cached. Objects that are not found are not cached.
+	 *
+	 * @param key    the key.
+	 * @param loader loads the object on a miss, returning {@code null} if there is none.
+	 * @return a copy of the object, or {@code null} if there is none.
+	 */
+	public V get(K key, Function<K, V> loader) {
+		V value = cache.getIfPresent(key);
+		if (value == null) {
+			// Load outside the cache's lock. If the object was written meanwhile, keep
+			// the written object rather than the one loaded before the write.
+			value = loader.apply(key);
+			if (value == null) {
+				return null;
+			}
+			V written = cache.asMap().putIfAbsent(key, copier.apply(value));
+			if (written != null) {
+				value = written;
+			}
+		}
+		return copier.apply(value);
+	}
+
+	/**
+	 * Find an object, without loading it if not cached.
+	 *
+	 * @param key the key.
+	 * @return a copy of the object, or {@code null} if it is not cached.
+	 */
+	public V getIfPresent(K key) {
+		V value = cache.getIfPresent(key);
+		return value == null ? null : copier.apply(value);
+	}
+
+	/**
+	 * Write a changed object through to the cache.
+	 *
+	 * @param key   the key.
+	 * @param value the object as saved.
+	 */
+	public void put(K key, V value) {
+		cache.put(key, copier.apply(value));
+	}
+
+	/**
+	 * Remove an object from the cache.
+	 *
+	 * @param key the key.
+	 */
+	public void invalidate(K key) {
+		cache.invalidate(key);
+	}
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.heroes.service;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import org.kathrynhuxtable.heroes.service.bean.Hero;
+import org.kathrynhuxtable.heroes.service.bean.User;
+
+/**
+ * Configure the near caches of Heroes by id and Users by id and username.
+ */
+@Configuration
+public class EntityCaches {
+
+	private final long maximumSize;
+	private final Duration expireAfterWrite;
+
+	public EntityCaches(@Value("${heroes.entity-cache.maximum-size:10000}") long maximumSize,
+	                    @Value("${heroes.entity-cache.expire-after-write-seconds:600}") long expireAfterWriteSeconds) {
+		this.maximumSize = maximumSize;
+		this.expireAfterWrite = Duration.ofSeconds(expireAfterWriteSeconds);
+	}
+
+	@Bean
+	public EntityCache<Long, Hero> heroCache() {
+		return new EntityCache<>("heroes.hero.cache", maximumSize, expireAfterWrite, hero -> hero.toBuilder().build());
+	}
+
+	@Bean
+	public EntityCache<Long, User> userCache() {
+		return new EntityCache<>("heroes.user.cache", maximumSize, expireAfterWrite, user -> user.toBuilder().build());
+	}
+
+	@Bean
+	public EntityCache<String, User> usernameCache() {
+		return new EntityCache<>("heroes.username.cache", maximumSize, expireAfterWrite, user -> user.toBuilder().build());
+	}
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.heroes.service;
+
+import java.util.List;
+
+import org.kathrynhuxtable.heroes.service.persistence.domain.HeroDO;
+
+/**
+ * Published after many Heroes have been updated or deleted by one statement or batch,
+ * so that anything holding Hero data outside the database can bring itself up to date
+ * at once rather than Hero by Hero.
+ *
+ * @param ids    the ids of the Heroes.
+ * @param heroes the updated Heroes, or empty if the Heroes were deleted.
+ */
+public record HeroBulkChangeEvent(List<Long> ids, List<HeroDO> heroes) {
+
+	public static HeroBulkChangeEvent updated(List<HeroDO> heroes) {
+		return new HeroBulkChangeEvent(heroes.stream().map(HeroDO::getId).toList(), heroes);
+	}
+
+	public static HeroBulkChangeEvent deleted(List<Long> ids) {
+		return new HeroBulkChangeEvent(ids, List.of());
+	}
+
+	public boolean isDeleted() {
+		return heroes.isEmpty();
+	}
+}
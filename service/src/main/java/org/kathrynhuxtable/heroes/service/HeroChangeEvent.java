@@ -0,0 +1,41 @@
+/*
+ * Copyright 2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.heroes.service;
+
+import org.kathrynhuxtable.heroes.service.persistence.domain.HeroDO;
+
+/**
+ * Published when a Hero is saved or deleted, inside the transaction that changes it, so
+ * that anything holding Hero data outside the database can bring itself up to date,
+ * either in the same transaction or once it commits.
+ *
+ * @param id   the id of the Hero.
+ * @param hero the saved Hero, or {@code null} if the Hero was deleted.
+ */
+public record HeroChangeEvent(Long id, HeroDO hero) {
+
+	public static HeroChangeEvent saved(HeroDO hero) {
+		return new HeroChangeEvent(hero.getId(), hero);
+	}
+
+	public static HeroChangeEvent deleted(long id) {
+		return new HeroChangeEvent(id, null);
+	}
+
+	public boolean isDeleted() {
+		return hero == null;
+	}
+}
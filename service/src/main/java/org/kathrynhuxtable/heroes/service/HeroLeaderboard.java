@@ -0,0 +1,183 @@
+/*
+ * Copyright 2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.heroes.service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import org.kathrynhuxtable.heroes.service.persistence.HeroDAO;
+import org.kathrynhuxtable.heroes.service.persistence.RatingNotNull;
+import org.kathrynhuxtable.heroes.service.persistence.domain.HeroDO;
+
+/**
+ * The rated Heroes in order of rating, highest first, and then of id, held in a
+ * concurrent skip list. It is loaded at startup and kept up to date from every
+ * HeroChangeEvent, so the top Heroes and the rank of a Hero are found without querying.
+ * <p>
+ * Finding the top {@code n} Heroes reads the first {@code n} entries of the list.
+ * Finding a rank counts the entries ahead of the Hero's by walking the list, since a
+ * skip list keeps no counts, so it takes time in proportion to the rank.
+ * </p>
+ * <p>
+ * Reads take no lock. A changed Hero's new entry is added before its old entry is
+ * removed, so a reader may briefly find both, but never neither.
+ * </p>
+ */
+@Slf4j
+@Component
+public class HeroLeaderboard {
+
+	private static final Comparator<Entry> ORDER = Comparator.comparingInt(Entry::rating).reversed()
+			.thenComparingLong(Entry::id)
+			.thenComparingLong(Entry::sequence);
+
+	private final HeroDAO heroDao;
+	private final NavigableSet<Entry> entries = new ConcurrentSkipListSet<>(ORDER);
+	private final Map<Long, Entry> entriesById = new ConcurrentHashMap<>();
+	private final AtomicLong sequence = new AtomicLong();
+	private final Object lock = new Object();
+	private volatile boolean loaded;
+
+	public HeroLeaderboard(HeroDAO heroDao) {
+		this.heroDao = heroDao;
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void onApplicationReady() {
+		load();
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onHeroChange(HeroChangeEvent event) {
+		synchronized (lock) {
+			// If nothing is loaded yet, the change will be read with everything else.
+			if (loaded) {
+				if (event.isDeleted()) {
+					remove(event.id());
+				} else {
+					replace(event.hero());
+				}
+			}
+		}
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onHeroBulkChange(HeroBulkChangeEvent event) {
+		synchronized (lock) {
+			if (loaded) {
+				if (event.isDeleted()) {
+					event.ids().forEach(this::remove);
+				} else {
+					event.heroes().forEach(this::replace);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Find the top rated Heroes.
+	 *
+	 * @param count the number of Heroes to return.
+	 * @return up to {@code count} Heroes, highest rated first.
+	 */
+	public List<HeroDO> top(int count) {
+		load();
+		List<HeroDO> heroes = new ArrayList<>(Math.min(count, entriesById.size()));
+		Set<Long> ids = new HashSet<>();
+		Iterator<Entry> iterator = entries.iterator();
+		while (heroes.size() < count && iterator.hasNext()) {
+			// Skip the old entry of a Hero being changed.
+			Entry entry = iterator.next();
+			if (ids.add(entry.id())) {
+				heroes.add(entry.hero());
+			}
+		}
+		return heroes;
+	}
+
+	/**
+	 * Find the position of a Hero in the leaderboard. Counts the entries ahead of the
+	 * Hero's, so takes time in proportion to the rank.
+	 *
+	 * @param id the Hero id.
+	 * @return the rank, starting at 1 for the highest rated Hero, or empty if there is
+	 *         no such Hero or it is not rated.
+	 */
+	public OptionalInt rank(long id) {
+		load();
+		Entry entry = entriesById.get(id);
+		return entry == null ? OptionalInt.empty() : OptionalInt.of(entries.headSet(entry).size() + 1);
+	}
+
+	private void load() {
+		if (!loaded) {
+			synchronized (lock) {
+				if (!loaded) {
+					long start = System.currentTimeMillis();
+					heroDao.findAll(new RatingNotNull()).forEach(this::add);
+					loaded = true;
+					log.info("Ranked " + entriesById.size() + " heroes in " + (System.currentTimeMillis() - start) + "ms");
+				}
+			}
+		}
+	}
+
+	private void add(HeroDO hero) {
+		if (hero.getRating() != null) {
+			Entry entry = new Entry(hero.getRating(), hero.getId(), sequence.incrementAndGet(), hero);
+			entriesById.put(entry.id(), entry);
+			entries.add(entry);
+		}
+	}
+
+	/**
+	 * Replace the entry of a changed Hero, adding the new entry before removing the old.
+	 */
+	private void replace(HeroDO hero) {
+		if (hero.getRating() == null) {
+			remove(hero.getId());
+			return;
+		}
+		Entry entry = new Entry(hero.getRating(), hero.getId(), sequence.incrementAndGet(), hero);
+		entries.add(entry);
+		Entry old = entriesById.put(entry.id(), entry);
+		if (old != null) {
+			entries.remove(old);
+		}
+	}
+
+	private void remove(long id) {
+		Entry entry = entriesById.remove(id);
+		if (entry != null) {
+			entries.remove(entry);
+		}
+	}
+
+	/**
+	 * A rated Hero. The Hero is never modified once added. The sequence orders the
+	 * entries of a Hero while both old and new are in the list.
+	 */
+	private record Entry(int rating, long id, long sequence, HeroDO hero) {
+	}
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.heroes.service;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import org.kathrynhuxtable.heroes.service.bean.Hero;
+import org.kathrynhuxtable.heroes.service.bean.UIFilterResult;
+import org.kathrynhuxtable.heroes.uifilter.bean.UIFilter;
+import org.kathrynhuxtable.heroes.uifilter.bean.UIFilterBucket;
+
+/**
+ * A cache of Hero search results, keyed by the endpoint and the canonical form of its
+ * request, and by the version of the Hero table.
+ * <p>
+ * Changing a Hero bumps the version, so results cached before the change are never found
+ * again and are left for eviction. The cache is bounded by the estimated size of the
+ * results in bytes, and its statistics are published to Micrometer as
+ * {@code heroes.result.cache}, along with its hit ratio and estimated size.
+ * </p>
+ * <p>
+ * Cached results are shared between callers, so must not be modified.
+ * </p>
+ */
+@Component
+public class HeroResultCache {
+
+	/**
+	 * The estimated size of an object header and its fields, for objects without strings.
+	 */
+	private static final int OBJECT_BYTES = 48;
+
+	private final Cache<List<Object>, Object> results;
+	private final AtomicLong version = new AtomicLong();
+
+	/**
+	 * Construct a HeroResultCache.
+	 *
+	 * @param maximumWeight the maximum estimated size of the cached results, in bytes.
+	 */
+	public HeroResultCache(@Value("${heroes.result-cache.maximum-weight:16777216}") long maximumWeight) {
+		this.results = Caffeine.newBuilder()
+				.maximumWeight(maximumWeight)
+				.weigher((List<Object> key, Object value) -> weigh(key) + weigh(value))
+				.recordStats()
+				.build();
+		CaffeineCacheMetrics.monitor(Metrics.globalRegistry, results, "heroes.result.cache");
+		Gauge.builder("heroes.result.cache.hit.ratio", results, cache -> cache.stats().hitRate())
+				.description("Fraction of Hero result lookups found in the cache")
+				.register(Metrics.globalRegistry);
+		Gauge.builder("heroes.result.cache.weight", results,
+						cache -> cache.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L))
+				.description("Estimated size of the cached Hero results")
+				.baseUnit("bytes")
+				.register(Metrics.globalRegistry);
+	}
+
+	/**
+	 * Find the result of a filter search, searching if not yet cached.
+	 *
+	 * @param filter the filter.
+	 * @param search runs the search on a miss.
+	 * @return the result.
+	 */
+	@SuppressWarnings("unchecked")
+	public UIFilterResult<Hero> getFilterResult(UIFilter filter, Supplier<UIFilterResult<Hero>> search) {
+		return (UIFilterResult<Hero>) get(Arrays.asList("filter", canonical(filter)), search);
+	}
+
+	/**
+	 * Invalidate every cached result. Must be called after Heroes are saved or deleted,
+	 * once the change can be read.
+	 */
+	public void invalidate() {
+		version.incrementAndGet();
+	}
+
+	private Object get(List<Object> request, Supplier<?> search) {
+		// Read the version before searching, so a search that races with a change is
+		// stored under the old version.
+		List<Object> key = Arrays.asList(version.get(), request);
+		Object result = results.getIfPresent(key);
+		if (result == null) {
+			// Search outside the cache's lock. Concurrent misses on one key just search twice.
+			result = search.get();
+			results.put(key, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Build the canonical form of a filter. Filter fields are ordered by name, since their
+	 * order does not matter, and the beans of the filter compare by value.
+	 */
+	private static List<Object> canonical(UIFilter filter) {
+		Map<String, List<Object>> filters = new TreeMap<>();
+		if (filter.getFilters() != null) {
+			filter.getFilters().forEach((field, constraints) ->
+					filters.put(field, constraints == null ? List.of() : new ArrayList<>(constraints)));
+		}
+		return Arrays.asList(
+				filter.getFirst(),
+				filter.getRows(),
+				copy(filter.getSortFields()),
+				filters,
+				copy(filter.getFields()),
+				filter.getGlobalFieldName(),
+				filter.getCursor(),
+				filter.getSlice(),
+				copy(filter.getFacets()));
+	}
+
+	private static List<Object> copy(List<?> list) {
+		return list == null ? List.of() : new ArrayList<>(list);
+	}
+
+	/**
+	 * Estimate the size of a cached key or result in bytes. Strings are counted by length
+	 * and everything else by a fixed size per object.
+	 */
+	private static int weigh(Object value) {
+		if (value == null) {
+			return 0;
+		} else if (value instanceof String s) {
+			return OBJECT_BYTES + 2 * s.length();
+		} else if (value instanceof Collection<?> collection) {
+			int weight = OBJECT_BYTES;
+			for (Object element : collection) {
+				weight += 8 + weigh(element);
+			}
+			return weight;
+		} else if (value instanceof Map<?, ?> map) {
+			int weight = OBJECT_BYTES;
+			for (Map.Entry<?, ?> entry : map.entrySet()) {
+				weight += OBJECT_BYTES + weigh(entry.getKey()) + weigh(entry.getValue());
+			}
+			return weight;
+		} else if (value instanceof UIFilterResult<?> result) {
+			return OBJECT_BYTES + weigh(result.getRecords()) + weigh(result.getCursor()) + weigh(result.getFacets());
+		} else if (value instanceof Hero hero) {
+			return 3 * OBJECT_BYTES + weigh(hero.getName()) + weigh(hero.getPower()) + weigh(hero.getAlterEgo());
+		} else if (value instanceof UIFilterBucket bucket) {
+			return OBJECT_BYTES + weigh(bucket.getValue());
+		} else {
+			return OBJECT_BYTES;
+		}
+	}
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.heroes.service;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import org.kathrynhuxtable.heroes.service.persistence.HeroDAO;
+import org.kathrynhuxtable.heroes.service.persistence.domain.HeroDO;
+
+/**
+ * Fills in the Hero search keys at startup for rows written before the keys existed.
+ * Heroes written since are kept up to date by HeroDO itself. A cheap query finds whether
+ * any keys are missing, so the table is only read when there is work to do. Keys written
+ * with a different normalization can't be found that way, so a backfill of every row can
+ * be requested after the normalization changes.
+ * <p>
+ * If any keys change, the trigram index is rebuilt too, since it uses the same
+ * normalization. This runs before the trigram index is checked, so the index is rebuilt
+ * at most once.
+ * </p>
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class HeroSearchKeyBackfill {
+
+	private static final int CHUNK_SIZE = 500;
+
+	private final HeroDAO heroDao;
+	private final HeroTrigramIndexer heroTrigramIndexer;
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	@Value("${heroes.search-keys.backfill-all:false}")
+	private boolean backfillAll;
+
+	@EventListener(ApplicationReadyEvent.class)
+	@Order(HeroTrigramIndexer.INDEX_ORDER - 10)
+	@Transactional
+	public void onApplicationReady() {
+		if (!backfillAll && !heroDao.existsMissingSearchKeys()) {
+			return;
+		}
+
+		long updated = 0;
+		Page<HeroDO> heroes;
+		int page = 0;
+		do {
+			heroes = heroDao.findAll(PageRequest.of(page++, CHUNK_SIZE, Sort.by("id")));
+			for (HeroDO hero : heroes) {
+				if (!hero.hasSearchKeys()) {
+					hero.updateSearchKeys();
+					updated++;
+				}
+			}
+			entityManager.flush();
+			entityManager.clear();
+		} while (heroes.hasNext());
+
+		if (updated > 0) {
+			log.info("Updated search keys of " + updated + " heroes");
+			heroTrigramIndexer.rebuild();
+		}
+	}
+}
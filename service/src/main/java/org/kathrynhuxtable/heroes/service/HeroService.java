@@ -16,53 +16,171 @@
 package org.kathrynhuxtable.heroes.service;
 
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.PropertyAccessorFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import org.kathrynhuxtable.heroes.service.bean.Hero;
+import org.kathrynhuxtable.heroes.service.bean.HeroBatchResult;
 import org.kathrynhuxtable.heroes.service.bean.UIFilterResult;
 import org.kathrynhuxtable.heroes.service.persistence.HeroDAO;
 import org.kathrynhuxtable.heroes.service.persistence.domain.HeroDO;
+import org.kathrynhuxtable.heroes.service.readmodel.HeroReadModel;
 import org.kathrynhuxtable.heroes.uifilter.bean.UIFilter;
 import org.kathrynhuxtable.heroes.uifilter.bean.UIFilterData;
 import org.kathrynhuxtable.heroes.uifilter.bean.UIFilterMatchMode;
+import org.kathrynhuxtable.heroes.uifilter.bean.UIFilterPage;
 
 /**
  * The Hero service. Provides an API for searching, saving, updating, and deleting Hero objects.
+ * <p>
+ * If the in-memory read model is enabled, searches are served from it, and every change
+ * is published as a HeroChangeEvent to keep it up to date. Otherwise the statements of
+ * each search run in one read-only transaction.
+ * </p>
+ * <p>
+ * Every change publishes its event inside the transaction that makes it, so that the
+ * trigram index is written in the same transaction, and the other listeners see the
+ * change once it commits. The caches are brought up to date after the commit.
+ * </p>
  */
 @Slf4j
 @Component
 @AllArgsConstructor
 public class HeroService {
 
+	/**
+	 * The number of Heroes saved in each transaction of a batch.
+	 */
+	public static final int BATCH_CHUNK_SIZE = 500;
+
+	/**
+	 * The number of times an update without an expected version is tried.
+	 */
+	private static final int UPDATE_ATTEMPTS = 3;
+
+	/**
+	 * The fields of a Hero that can be patched.
+	 */
+	public static final Set<String> PATCHABLE_FIELDS = Set.of("name", "power", "alterEgo", "rating", "powerDate");
+
 	private final HeroDAO heroDao;
+	private final Optional<HeroReadModel> heroReadModel;
+	private final ApplicationEventPublisher eventPublisher;
+	private final HeroResultCache resultCache;
+	private final EntityCache<Long, Hero> heroCache;
+	private final HeroLeaderboard leaderboard;
+	private final PlatformTransactionManager transactionManager;
+	private final ReadTransactions readTransactions;
 
 	/**
-	 * Search by filter.
+	 * Search by filter. Results are cached until a Hero is changed.
 	 *
 	 * @param filter the UIFilter from the client.
 	 * @return the HeroFilterResult.
 	 */
 	public UIFilterResult<Hero> find(UIFilter filter) {
 		log.info("Filter: " + filter.toString());
-		long totalRecords = heroDao.countByFilter(filter);
-		List<HeroDO> heroes = heroDao.findByFilter(filter);
+		// Reject a bad filter before a connection is taken.
+		heroDao.validateFilter(filter);
 
+		return resultCache.getFilterResult(filter, () -> findUncached(filter));
+	}
+
+	private UIFilterResult<Hero> findUncached(UIFilter filter) {
 		UIFilterResult<Hero> result = new UIFilterResult<>();
-		result.setRecords(toHeroes(heroes));
-		result.setTotalRecords((int) totalRecords);
+		UIFilterPage<?> page;
+		if (filter.getFields() != null && !filter.getFields().isEmpty()) {
+			// Only the requested fields are selected, and the rest are left null.
+			UIFilterPage<Map<String, Object>> projection = heroReadModel
+					.map(readModel -> readModel.findProjectionByFilter(filter, "id", HeroDO.class))
+					.orElseGet(() -> readTransactions.read(() -> heroDao.findProjectionByFilter(filter)));
+			result.setRecords(projection.getRecords().stream().map(this::toHero).collect(Collectors.toList()));
+			page = projection;
+		} else {
+			UIFilterPage<HeroDO> heroes = heroReadModel
+					.map(readModel -> readModel.findPageByFilter(filter, "id", HeroDO.class))
+					.orElseGet(() -> readTransactions.read(() -> heroDao.findPageByFilter(filter)));
+			result.setRecords(toHeroes(heroes.getRecords()));
+			page = heroes;
+		}
+		result.setTotalRecords(page.getTotalRecords() == null ? null : page.getTotalRecords().intValue());
+		result.setMore(page.isMore());
+		result.setCursor(page.getCursor());
+		result.setFacets(page.getFacets());
 		return result;
 	}
 
 	/**
-	 * Find the first five heroes with the top rating values.
-	 * @return a List of up to 5 Hero objects.
+	 * Check a filter, so that a bad request can be rejected before a response is started.
+	 *
+	 * @param filter the UIFilter from the client.
+	 */
+	public void validate(UIFilter filter) {
+		heroDao.validateFilter(filter);
+	}
+
+	/**
+	 * Check a filter for an export, so that a bad request, or one scanning too much of the
+	 * table, can be rejected before the export starts writing.
+	 *
+	 * @param filter the UIFilter from the client.
+	 */
+	public void validateExport(UIFilter filter) {
+		if (heroReadModel.isPresent()) {
+			heroReadModel.get().validateExport(filter, HeroDO.class);
+		} else {
+			readTransactions.run(() -> heroDao.validateExportFilter(filter));
+		}
+	}
+
+	/**
+	 * Pass every Hero matching a filter to a consumer, ignoring pagination. Heroes are
+	 * read and converted one at a time, so the whole result is never held in memory.
+	 *
+	 * @param filter   the UIFilter from the client.
+	 * @param consumer receives each matching Hero.
+	 */
+	public void export(UIFilter filter, Consumer<Hero> consumer) {
+		log.info("Export: " + filter.toString());
+		if (heroReadModel.isPresent()) {
+			heroReadModel.get().forEachByFilter(filter, "id", HeroDO.class, heroDO -> consumer.accept(toHero(heroDO)));
+		} else {
+			readTransactions.run(() -> heroDao.forEachByFilter(filter, heroDO -> consumer.accept(toHero(heroDO))));
+		}
+	}
+
+	/**
+	 * Find the heroes with the top rating values, from the leaderboard.
+	 *
+	 * @param count the number of heroes to return.
+	 * @return a List of up to {@code count} Hero objects.
 	 */
-	public List<Hero> findTopHeroes() {
-		return toHeroes(heroDao.findTopHeroes(5));
+	public List<Hero> findTopHeroes(int count) {
+		return toHeroes(leaderboard.top(count));
+	}
+
+	/**
+	 * Find the position of a hero by rating, from the leaderboard.
+	 *
+	 * @param id the Hero id value.
+	 * @return the rank, starting at 1 for the top rated hero, or {@code null} if there is
+	 *         no such hero or it has no rating.
+	 */
+	public Integer findRank(long id) {
+		OptionalInt rank = leaderboard.rank(id);
+		return rank.isPresent() ? rank.getAsInt() : null;
 	}
 
 	/**
@@ -79,41 +197,296 @@ public class HeroService {
 		Map<String, List<UIFilterData>> filterMap = new HashMap<>();
 		filterMap.put("name", Collections.singletonList(md));
 		filter.setFilters(filterMap);
-		return toHeroes(heroDao.findByFilter(filter));
+		return toHeroes(heroReadModel
+				.map(readModel -> readModel.findByFilter(filter, "id", heroDao))
+				.orElseGet(() -> readTransactions.read(() -> heroDao.findByFilter(filter))));
 	}
 
 	/**
-	 * Find by ID.
+	 * Find by ID. Heroes are served from a near cache, which saves write through to.
 	 *
 	 * @param id the Hero id value.
 	 * @return the Hero matching the id, or {@code null} if no match.
 	 */
 	public Hero find(long id) {
 		log.info("Searching for hero " + id);
-		Optional<HeroDO> heroDO = heroDao.findById(id);
-		return heroDO.map(this::toHero).orElse(null);
+		return heroCache.get(id, key -> {
+			Optional<HeroDO> heroDO = heroReadModel.isPresent()
+					? heroReadModel.get().findById(key)
+					: readTransactions.read(() -> heroDao.findById(key));
+			return heroDO.map(this::toHero).orElse(null);
+		});
 	}
 
 	/**
-	 * Save or update a Hero. If the id is null or zero, a new Hero will be created,
-	 * otherwise an update will be attempted. Same as {@code save} method.
+	 * Update an existing Hero, if it is still at the expected version. The Hero is loaded
+	 * and changed in one transaction, and the UPDATE itself checks the version, so no lock
+	 * is held. Without an expected version, an update that loses a race is retried.
 	 *
-	 * @param hero the Hero data to save or update.
-	 * @return the saved Hero, or {@code null} if no match on id.
+	 * @param hero            the Hero data to update.
+	 * @param expectedVersion the version the client last saw, or {@code null} to update any version.
+	 * @return the updated Hero, or {@code null} if no match on id.
+	 * @throws OptimisticLockingFailureException if the Hero is no longer at the expected version.
 	 */
-	public Hero update(Hero hero) {
-		return toHero(heroDao.save(toHeroDO(hero)));
+	public Hero update(Hero hero, Long expectedVersion) {
+		TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+		for (int attempt = 1; ; attempt++) {
+			try {
+				HeroDO saved = transaction.execute(status -> updateHeroDO(hero, expectedVersion));
+				if (saved != null) {
+					cacheChange(saved);
+				}
+				return toHero(saved);
+			} catch (OptimisticLockingFailureException e) {
+				if (expectedVersion != null || attempt == UPDATE_ATTEMPTS) {
+					throw e;
+				}
+			}
+		}
 	}
 
 	/**
 	 * Save or update a Hero. If the id is null or zero, a new Hero will be created,
-	 * otherwise an update will be attempted. Same as {@code update} method.
+	 * otherwise an update will be attempted.
 	 *
 	 * @param hero the Hero data to save or update.
 	 * @return the saved Hero, or {@code null} if no match on id.
 	 */
 	public Hero save(Hero hero) {
-		return toHero(heroDao.save(toHeroDO(hero)));
+		HeroDO heroDO = toHeroDO(hero);
+		if (heroDO.getId() == null) {
+			// A new Hero starts at the first version, whatever the client sent.
+			heroDO.setVersion(null);
+		}
+		return toHero(saveHeroDO(heroDO));
+	}
+
+	/**
+	 * Change some fields of a Hero with a single UPDATE statement, rather than loading and
+	 * merging it. The new state is built from the cached Hero if there is one, so the Hero
+	 * is only read back after a cache miss.
+	 *
+	 * @param id      the Hero id value.
+	 * @param changes holds the new values of the fields.
+	 * @param fields  the names of the fields to change, from {@code PATCHABLE_FIELDS}.
+	 * @param expectedVersion the version the client last saw, or {@code null} to update any version.
+	 * @return the updated Hero, or {@code null} if no match on id.
+	 * @throws OptimisticLockingFailureException if the Hero is no longer at the expected version.
+	 */
+	public Hero patch(long id, Hero changes, Set<String> fields, Long expectedVersion) {
+		log.info("Patching hero " + id + " fields " + fields);
+		Map<String, Object> values = toValues(changes, fields);
+
+		Hero hero = heroCache.getIfPresent(id);
+		if (hero == null && heroReadModel.isPresent()) {
+			hero = heroReadModel.get().findById(id).map(this::toHero).orElse(null);
+		}
+
+		Hero cached = hero;
+		HeroDO heroDO = new TransactionTemplate(transactionManager)
+				.execute(status -> patchHeroDO(id, values, cached, expectedVersion));
+		if (heroDO == null) {
+			return null;
+		}
+		cacheChange(heroDO);
+		return toHero(heroDO);
+	}
+
+	/**
+	 * Change some fields of a Hero with a single UPDATE statement, and build its new state.
+	 *
+	 * @param id              the Hero id value.
+	 * @param values          the new values of the fields, by name.
+	 * @param hero            the cached Hero, or {@code null} if not cached.
+	 * @param expectedVersion the version the client last saw, or {@code null} to update any version.
+	 * @return the updated HeroDO, or {@code null} if no match on id.
+	 */
+	private HeroDO patchHeroDO(long id, Map<String, Object> values, Hero hero, Long expectedVersion) {
+		// Without an expected version, the cached version is checked, so that the cached
+		// state can be trusted. If it is stale, update whatever the version and read back.
+		Long version = expectedVersion != null ? expectedVersion : hero == null ? null : hero.getVersion();
+		int updated = heroDao.updateById(id, values, version);
+		if (updated == 0 && expectedVersion == null && version != null) {
+			updated = heroDao.updateById(id, values, null);
+			hero = null;
+		}
+		if (updated == 0) {
+			heroCache.invalidate(id);
+			if (expectedVersion != null && heroDao.existsById(id)) {
+				throw new OptimisticLockingFailureException("Hero " + id + " is no longer at version " + expectedVersion);
+			}
+			return null;
+		}
+		if (hero != null && (version == null || !version.equals(hero.getVersion()))) {
+			// The cached Hero was stale, but the client's version was current.
+			hero = null;
+		}
+		HeroDO heroDO;
+		if (hero == null) {
+			heroDO = heroDao.findById(id).orElse(null);
+			if (heroDO == null) {
+				// Deleted since the update.
+				return null;
+			}
+		} else {
+			BeanWrapper target = PropertyAccessorFactory.forBeanPropertyAccess(hero);
+			values.forEach(target::setPropertyValue);
+			hero.setVersion(version + 1);
+			heroDO = toHeroDO(hero);
+			heroDO.updateSearchKeys();
+		}
+		eventPublisher.publishEvent(HeroChangeEvent.saved(heroDO));
+		return heroDO;
+	}
+
+	/**
+	 * Change some fields of every Hero matching a filter with a single UPDATE statement.
+	 * The caches are brought up to date once for all the Heroes.
+	 *
+	 * @param filter  the UIFilter from the client. Pagination and sorting are ignored.
+	 * @param changes holds the new values of the fields.
+	 * @param fields  the names of the fields to change, from {@code PATCHABLE_FIELDS}.
+	 * @return the number of Heroes updated.
+	 */
+	public int updateByFilter(UIFilter filter, Hero changes, Set<String> fields) {
+		log.info("Bulk update of fields " + fields + ": " + filter.toString());
+		heroDao.validateFilter(filter);
+		Map<String, Object> values = toValues(changes, fields);
+		List<HeroDO> heroes = bulkTransaction().execute(status -> {
+			List<Long> ids = heroDao.updateByFilter(filter, values);
+			// Read the new state back for the listeners, which hold whole Heroes.
+			List<HeroDO> updated = new ArrayList<>(ids.size());
+			for (int start = 0; start < ids.size(); start += BATCH_CHUNK_SIZE) {
+				updated.addAll(heroDao.findAllById(ids.subList(start, Math.min(start + BATCH_CHUNK_SIZE, ids.size()))));
+			}
+			if (!updated.isEmpty()) {
+				eventPublisher.publishEvent(HeroBulkChangeEvent.updated(updated));
+			}
+			return updated;
+		});
+		if (!heroes.isEmpty()) {
+			heroes.forEach(heroDO -> heroCache.put(heroDO.getId(), toHero(heroDO)));
+			heroDao.invalidateCounts();
+			resultCache.invalidate();
+		}
+		return heroes.size();
+	}
+
+	/**
+	 * Delete every Hero matching a filter with a single DELETE statement. The caches are
+	 * brought up to date once for all the Heroes.
+	 *
+	 * @param filter the UIFilter from the client. Pagination and sorting are ignored.
+	 * @return the number of Heroes deleted.
+	 */
+	public int deleteByFilter(UIFilter filter) {
+		log.info("Bulk delete: " + filter.toString());
+		heroDao.validateFilter(filter);
+		List<Long> ids = bulkTransaction().execute(status -> {
+			List<Long> deleted = heroDao.deleteByFilter(filter);
+			if (!deleted.isEmpty()) {
+				eventPublisher.publishEvent(HeroBulkChangeEvent.deleted(deleted));
+			}
+			return deleted;
+		});
+		if (!ids.isEmpty()) {
+			ids.forEach(heroCache::invalidate);
+			heroDao.invalidateCounts();
+			resultCache.invalidate();
+		}
+		return ids.size();
+	}
+
+	/**
+	 * Save or update many Heroes. Heroes with a null or zero id are created, and the rest
+	 * are updated. The Heroes are saved in chunks, each in its own transaction, so that
+	 * the inserts and updates go to the database in JDBC batches. If a chunk fails, it is
+	 * rolled back and all its Heroes are reported as failed, but the other chunks are kept.
+	 *
+	 * @param heroes the Hero data to save or update.
+	 * @return the outcome for each Hero, in the same order.
+	 */
+	public List<HeroBatchResult> saveAll(List<Hero> heroes) {
+		log.info("Saving batch of " + heroes.size() + " heroes");
+		TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+		List<HeroBatchResult> results = new ArrayList<>(heroes.size());
+		for (int start = 0; start < heroes.size(); start += BATCH_CHUNK_SIZE) {
+			int offset = start;
+			List<Hero> chunk = heroes.subList(start, Math.min(start + BATCH_CHUNK_SIZE, heroes.size()));
+			List<HeroDO> saved = new ArrayList<>(chunk.size());
+			try {
+				results.addAll(transaction.execute(status -> saveChunk(chunk, offset, saved)));
+			} catch (RuntimeException e) {
+				log.warn("Failed to save heroes " + offset + " to " + (offset + chunk.size() - 1), e);
+				for (int i = 0; i < chunk.size(); i++) {
+					results.add(HeroBatchResult.builder()
+							.index(offset + i)
+							.id(chunk.get(i).getId())
+							.status(HeroBatchResult.Status.failed)
+							.error(e.getMessage())
+							.build());
+				}
+				continue;
+			}
+
+			if (!saved.isEmpty()) {
+				saved.forEach(heroDO -> heroCache.put(heroDO.getId(), toHero(heroDO)));
+				heroDao.invalidateCounts();
+				resultCache.invalidate();
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Save one chunk of a batch. The existing Heroes are loaded with a single query and
+	 * updated in place, and the whole chunk is flushed at once.
+	 *
+	 * @param chunk  the Hero data to save or update.
+	 * @param offset the index of the first Hero of the chunk in the batch.
+	 * @param saved  receives the saved HeroDO objects.
+	 * @return the outcome for each Hero of the chunk.
+	 */
+	private List<HeroBatchResult> saveChunk(List<Hero> chunk, int offset, List<HeroDO> saved) {
+		List<Long> ids = chunk.stream()
+				.map(Hero::getId)
+				.filter(id -> id != null && id != 0L)
+				.collect(Collectors.toList());
+		Map<Long, HeroDO> existing = heroDao.findAllById(ids).stream()
+				.collect(Collectors.toMap(HeroDO::getId, Function.identity()));
+
+		List<HeroBatchResult> results = new ArrayList<>(chunk.size());
+		for (int i = 0; i < chunk.size(); i++) {
+			Hero hero = chunk.get(i);
+			HeroBatchResult.HeroBatchResultBuilder result = HeroBatchResult.builder().index(offset + i);
+			if (hero.getId() == null || hero.getId() == 0L) {
+				// The id is allocated from the pool when the Hero is persisted.
+				HeroDO heroDO = toHeroDO(hero);
+				heroDO.setId(null);
+				heroDO.setVersion(null);
+				heroDO = heroDao.save(heroDO);
+				saved.add(heroDO);
+				result.id(heroDO.getId()).status(HeroBatchResult.Status.created);
+			} else {
+				HeroDO heroDO = existing.get(hero.getId());
+				result.id(hero.getId());
+				if (heroDO == null) {
+					result.status(HeroBatchResult.Status.notFound);
+				} else {
+					copyFields(hero, heroDO);
+					saved.add(heroDO);
+					result.status(HeroBatchResult.Status.updated);
+				}
+			}
+			results.add(result.build());
+		}
+		heroDao.flush();
+		// Publish the changes as one event, so that the listeners bring themselves up to
+		// date once per chunk rather than per Hero.
+		if (!saved.isEmpty()) {
+			eventPublisher.publishEvent(HeroBulkChangeEvent.updated(saved));
+		}
+		return results;
 	}
 
 	/**
@@ -123,11 +496,118 @@ public class HeroService {
 	 * @return the Hero that was deleted.
 	 */
 	public Hero delete(long id) {
-		Optional<HeroDO> found = heroDao.findById(id);
-        found.ifPresent(heroDao::delete);
+		Optional<HeroDO> found = new TransactionTemplate(transactionManager).execute(status -> {
+			Optional<HeroDO> heroDO = heroDao.findById(id);
+			heroDO.ifPresent(existing -> {
+				heroDao.delete(existing);
+				eventPublisher.publishEvent(HeroChangeEvent.deleted(id));
+			});
+			return heroDO;
+		});
+		found.ifPresent(heroDO -> {
+			heroCache.invalidate(id);
+			heroDao.invalidateCounts();
+			resultCache.invalidate();
+		});
 		return found.map(this::toHero).orElse(null);
 	}
 
+	/**
+	 * Load a Hero and copy the new values onto it, checking the version it was loaded at.
+	 *
+	 * @param hero            the Hero data to update.
+	 * @param expectedVersion the version the Hero must have, or {@code null}.
+	 * @return the updated HeroDO, or {@code null} if no match on id.
+	 */
+	private HeroDO updateHeroDO(Hero hero, Long expectedVersion) {
+		HeroDO heroDO = heroDao.findById(hero.getId()).orElse(null);
+		if (heroDO == null) {
+			return null;
+		}
+		if (expectedVersion != null && !expectedVersion.equals(heroDO.getVersion())) {
+			throw new OptimisticLockingFailureException("Hero " + hero.getId() + " is no longer at version " + expectedVersion);
+		}
+		copyFields(hero, heroDO);
+		// Flush now, so that the version is incremented before the Hero is returned.
+		heroDao.flush();
+		eventPublisher.publishEvent(HeroChangeEvent.saved(heroDO));
+		return heroDO;
+	}
+
+	/**
+	 * Save a domain object and publish the change in the same transaction.
+	 *
+	 * @param heroDO the HeroDO to save.
+	 * @return the saved HeroDO.
+	 */
+	private HeroDO saveHeroDO(HeroDO heroDO) {
+		HeroDO saved = new TransactionTemplate(transactionManager).execute(status -> {
+			HeroDO result = heroDao.save(heroDO);
+			// Flush now, so that the listeners see the id and version as saved.
+			heroDao.flush();
+			eventPublisher.publishEvent(HeroChangeEvent.saved(result));
+			return result;
+		});
+		cacheChange(saved);
+		return saved;
+	}
+
+	/**
+	 * Write a saved Hero through to the cache and invalidate the cached counts, once the
+	 * change is committed. The cached results are invalidated last, once the listeners
+	 * have seen the change.
+	 *
+	 * @param saved the HeroDO as saved.
+	 */
+	private void cacheChange(HeroDO saved) {
+		heroCache.put(saved.getId(), toHero(saved));
+		heroDao.invalidateCounts();
+		resultCache.invalidate();
+	}
+
+	/**
+	 * Build a transaction for a change to Heroes matching a filter. The DAO selects the
+	 * matching ids before changing the Heroes, so that the caches can be brought up to
+	 * date. The transaction is SERIALIZABLE so that no Hero can start or stop matching
+	 * the filter in between. The DAO joins this transaction and sets no isolation of its
+	 * own, since an isolation is ignored when joining.
+	 */
+	private TransactionTemplate bulkTransaction() {
+		TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+		transaction.setIsolationLevel(TransactionDefinition.ISOLATION_SERIALIZABLE);
+		return transaction;
+	}
+
+	/**
+	 * Collect the values of some fields of a transfer object, including null values.
+	 *
+	 * @param changes a Hero object.
+	 * @param fields  the names of the fields.
+	 * @return a Map of field names to values.
+	 */
+	private static Map<String, Object> toValues(Hero changes, Set<String> fields) {
+		BeanWrapper source = PropertyAccessorFactory.forBeanPropertyAccess(changes);
+		Map<String, Object> values = new HashMap<>();
+		for (String field : fields) {
+			values.put(field, source.getPropertyValue(field));
+		}
+		return values;
+	}
+
+	/**
+	 * Copy the editable fields of a transfer object onto a domain object.
+	 *
+	 * @param hero   a Hero object.
+	 * @param heroDO a HeroDO object.
+	 */
+	private static void copyFields(Hero hero, HeroDO heroDO) {
+		heroDO.setName(hero.getName());
+		heroDO.setPower(hero.getPower());
+		heroDO.setAlterEgo(hero.getAlterEgo());
+		heroDO.setRating(hero.getRating());
+		heroDO.setPowerDate(hero.getPowerDate());
+	}
+
 	/**
 	 * Convert List of domain objects to List of transfer objects.
 	 *
@@ -144,7 +624,7 @@ public class HeroService {
 	 * @param heroDO a HeroDO object.
 	 * @return a Hero object.
 	 */
-	private Hero toHero(HeroDO heroDO) {
+	public Hero toHero(HeroDO heroDO) {
 		if (heroDO == null) {
 			return null;
 		} else {
@@ -155,10 +635,29 @@ public class HeroService {
 					.alterEgo(heroDO.getAlterEgo())
 					.rating(heroDO.getRating())
 					.powerDate(heroDO.getPowerDate())
+					.version(heroDO.getVersion())
 					.build();
 		}
 	}
 
+	/**
+	 * Convert projected values to a transfer object. Values the transfer object does not
+	 * hold are ignored.
+	 *
+	 * @param values a Map of attribute names to values.
+	 * @return a Hero object.
+	 */
+	private Hero toHero(Map<String, Object> values) {
+		Hero hero = new Hero();
+		BeanWrapper wrapper = PropertyAccessorFactory.forBeanPropertyAccess(hero);
+		values.forEach((name, value) -> {
+			if (wrapper.isWritableProperty(name)) {
+				wrapper.setPropertyValue(name, value);
+			}
+		});
+		return hero;
+	}
+
 	/**
 	 * Convert a transfer object to a domain object.
 	 *
@@ -176,6 +675,7 @@ public class HeroService {
 			heroDO.setAlterEgo(hero.getAlterEgo());
 			heroDO.setRating(hero.getRating());
 			heroDO.setPowerDate(hero.getPowerDate());
+			heroDO.setVersion(hero.getVersion());
 			return heroDO;
 		}
 	}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.heroes.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.PropertyAccessorFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import org.kathrynhuxtable.heroes.service.persistence.HeroDAO;
+import org.kathrynhuxtable.heroes.service.persistence.HeroTrigramDAO;
+import org.kathrynhuxtable.heroes.service.persistence.domain.HeroDO;
+import org.kathrynhuxtable.heroes.service.persistence.domain.HeroTrigramDO;
+import org.kathrynhuxtable.heroes.uifilter.TrigramIndexed;
+import org.kathrynhuxtable.heroes.uifilter.Trigrams;
+
+/**
+ * Maintains the Hero trigram index, which narrows {@code contains} and global filters to
+ * candidate Heroes. The index is updated on every HeroChangeEvent, before the transaction
+ * that changed the Heroes commits, so the index and the Heroes commit or roll back
+ * together. It is checked at startup, and rebuilt if it is out of step.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class HeroTrigramIndexer {
+
+	/**
+	 * The order of the startup check among the ApplicationReadyEvent listeners, after the
+	 * search keys are filled in, since the trigrams use the same normalization.
+	 */
+	public static final int INDEX_ORDER = 100;
+
+	private static final int REBUILD_CHUNK_SIZE = 500;
+
+	private static final String[] ATTRIBUTES = HeroDO.class.getAnnotation(TrigramIndexed.class).attributes();
+
+	private final HeroDAO heroDao;
+	private final HeroTrigramDAO heroTrigramDao;
+
+	@Value("${heroes.trigram-index.rebuild-on-startup:false}")
+	private boolean rebuildOnStartup;
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	@TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
+	public void onHeroChange(HeroChangeEvent event) {
+		heroTrigramDao.deleteByHeroId(event.id());
+		if (!event.isDeleted()) {
+			index(event.hero());
+		}
+	}
+
+	@TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
+	public void onHeroBulkChange(HeroBulkChangeEvent event) {
+		// Delete in chunks, to keep the IN lists short.
+		List<Long> ids = event.ids();
+		for (int start = 0; start < ids.size(); start += REBUILD_CHUNK_SIZE) {
+			heroTrigramDao.deleteByHeroIdIn(ids.subList(start, Math.min(start + REBUILD_CHUNK_SIZE, ids.size())));
+		}
+		for (HeroDO hero : event.heroes()) {
+			index(hero);
+		}
+	}
+
+	/**
+	 * Check the index at startup, and rebuild it if it is empty, or if a Hero that should
+	 * be indexed is not, or the entries of a deleted Hero remain. Those can only be left by
+	 * writes from before the index was written in the same transaction as the Heroes, or
+	 * by loading Heroes without publishing changes, which the check finds cheaply. Entries
+	 * that are merely stale are not found, so a rebuild can also be requested.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	@Order(INDEX_ORDER)
+	@Transactional
+	public void onApplicationReady() {
+		if (heroDao.count() == 0) {
+			return;
+		}
+		if (rebuildOnStartup) {
+			log.info("Rebuilding the Hero trigram index, as configured");
+			rebuildIndex();
+		} else if (heroTrigramDao.count() == 0) {
+			rebuildIndex();
+		} else if (heroTrigramDao.countOrphans() > 0
+				|| heroTrigramDao.findUnindexedHeroes().stream().anyMatch(hero -> !entries(hero).isEmpty())) {
+			log.warn("The Hero trigram index is out of step with the Heroes, so it will be rebuilt");
+			rebuildIndex();
+		}
+	}
+
+	/**
+	 * Rebuild the whole index. Needed after Heroes are loaded without publishing
+	 * HeroChangeEvents.
+	 */
+	@Transactional
+	public void rebuild() {
+		rebuildIndex();
+	}
+
+	private void rebuildIndex() {
+		long start = System.currentTimeMillis();
+		heroTrigramDao.deleteAllInBatch();
+
+		// Work in chunks, clearing the persistence context so memory use stays flat.
+		long count = 0;
+		Page<HeroDO> heroes;
+		int page = 0;
+		do {
+			heroes = heroDao.findAll(PageRequest.of(page++, REBUILD_CHUNK_SIZE, Sort.by("id")));
+			for (HeroDO hero : heroes) {
+				index(hero);
+			}
+			entityManager.flush();
+			entityManager.clear();
+			count += heroes.getNumberOfElements();
+		} while (heroes.hasNext());
+
+		log.info("Indexed " + count + " heroes in " + (System.currentTimeMillis() - start) + "ms");
+	}
+
+	/**
+	 * Insert the index entries of a Hero. They are persisted rather than saved, since
+	 * their keys are assigned, and saving would merge them, selecting each one before
+	 * inserting it. The inserts are sent in JDBC batches when the context is flushed.
+	 */
+	private void index(HeroDO hero) {
+		for (HeroTrigramDO entry : entries(hero)) {
+			entityManager.persist(entry);
+		}
+	}
+
+	private static List<HeroTrigramDO> entries(HeroDO hero) {
+		BeanWrapper wrapper = PropertyAccessorFactory.forBeanPropertyAccess(hero);
+		List<HeroTrigramDO> entries = new ArrayList<>();
+		for (String attribute : ATTRIBUTES) {
+			for (String trigram : Trigrams.of((String) wrapper.getPropertyValue(attribute))) {
+				entries.add(new HeroTrigramDO(attribute, trigram, hero.getId()));
+			}
+		}
+		return entries;
+	}
+}
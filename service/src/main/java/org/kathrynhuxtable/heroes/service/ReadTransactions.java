@@ -0,0 +1,69 @@
+/*
+ * Copyright 2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.heroes.service;
+
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Runs the database reads of a request in one read-only transaction, so that they share
+ * a connection, and Hibernate neither keeps snapshots for dirty checking nor flushes.
+ * <p>
+ * The isolation level defaults to {@code REPEATABLE_READ}. Derby has no snapshots, so
+ * only {@code REPEATABLE_READ} or {@code SERIALIZABLE} make a count agree with its page
+ * while Heroes are being written. The price is that read locks are held until the
+ * request ends, blocking writers of the rows read. A deployment that cannot afford the
+ * locks may opt out with {@code READ_COMMITTED}, accepting that a count may then
+ * disagree with its page.
+ * </p>
+ */
+@Component
+public class ReadTransactions {
+
+	private final TransactionTemplate template;
+
+	public ReadTransactions(PlatformTransactionManager transactionManager,
+	                        @Value("${heroes.read-transaction.isolation:REPEATABLE_READ}") Isolation isolation) {
+		this.template = new TransactionTemplate(transactionManager);
+		this.template.setReadOnly(true);
+		this.template.setIsolationLevel(isolation.value());
+	}
+
+	/**
+	 * Run a finder in a read-only transaction, or in the current transaction if there is one.
+	 *
+	 * @param finder the finder.
+	 * @param <T>    the type of the result.
+	 * @return the result of the finder.
+	 */
+	public <T> T read(Supplier<T> finder) {
+		return template.execute(status -> finder.get());
+	}
+
+	/**
+	 * Run a finder with no result in a read-only transaction.
+	 *
+	 * @param finder the finder.
+	 */
+	public void run(Runnable finder) {
+		template.executeWithoutResult(status -> finder.run());
+	}
+}
@@ -29,6 +29,11 @@ import org.kathrynhuxtable.heroes.service.persistence.domain.UserDO;
 /**
  * The User Service. Provides an API for finding users and updating their preferred theme.
  * (No other updates are currently available.)
+ * <p>
+ * Users are looked up on every route the UI navigates to, so lookups by id and by
+ * username are served from near caches, and theme updates are written through to them.
+ * A miss is loaded, privileges included, in one read-only transaction.
+ * </p>
  */
 @Slf4j
 @Component
@@ -36,6 +41,9 @@ import org.kathrynhuxtable.heroes.service.persistence.domain.UserDO;
 public class UserService {
 
 	private final UserDAO userDao;
+	private final EntityCache<Long, User> userCache;
+	private final EntityCache<String, User> usernameCache;
+	private final ReadTransactions readTransactions;
 
 	/**
 	 * Find a User by id.
@@ -44,8 +52,7 @@ public class UserService {
 	 * @return the User matching the id, or {@code null} if no match.
 	 */
 	public User findUser(long id) {
-		Optional<UserDO> user = userDao.findById(id);
-		return user.map(this::toUser).orElse(null);
+		return userCache.get(id, key -> readTransactions.read(() -> userDao.findById(key).map(this::toUser).orElse(null)));
 	}
 
 	/**
@@ -55,8 +62,10 @@ public class UserService {
 	 * @return the User matching the id, or {@code null} if no match.
 	 */
 	public User findUserByUsername(String username) {
-		UserDO user = userDao.findByUsername(username);
-		return user == null ? null : toUser(user);
+		return usernameCache.get(username, key -> readTransactions.read(() -> {
+			UserDO user = userDao.findByUsername(key);
+			return user == null ? null : toUser(user);
+		}));
 	}
 
 	/**
@@ -73,7 +82,10 @@ public class UserService {
 		} else {
 			UserDO user = optUser.get();
 			user.setPreferredTheme(theme);
-			return toUser(userDao.save(user));
+			User saved = toUser(userDao.save(user));
+			userCache.put(saved.getId(), saved);
+			usernameCache.put(saved.getUsername(), saved);
+			return saved;
 		}
 	}
 
@@ -30,4 +30,5 @@ public class Avatar {
 
 	private String avatar;
 	private String mimeType;
+	private String hash;
 }
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.heroes.service.bean;
+
+import java.nio.ByteBuffer;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * An avatar image or thumbnail, held off the heap for serving directly rather than as
+ * Base64 JSON.
+ */
+@Data
+@Builder(toBuilder = true)
+public class AvatarImage {
+
+	private String mimeType;
+
+	/**
+	 * The SHA-256 hex hash of the original image, which names its content.
+	 */
+	private String hash;
+
+	/**
+	 * The thumbnail size, or {@code null} for the original image.
+	 */
+	private Integer size;
+
+	/**
+	 * The image bytes, in a read-only direct buffer.
+	 */
+	private ByteBuffer data;
+}
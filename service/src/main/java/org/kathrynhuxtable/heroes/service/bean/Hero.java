@@ -26,7 +26,7 @@ import lombok.NoArgsConstructor;
  * The Hero transfer object for the REST services.
  */
 @Data
-@Builder
+@Builder(toBuilder = true)
 @AllArgsConstructor
 @NoArgsConstructor
 public class Hero {
@@ -37,4 +37,9 @@ public class Hero {
 	private String alterEgo;
 	private Integer rating;
 	private Date powerDate;
+
+	/**
+	 * The version of the Hero, incremented by every change. Sent as the ETag.
+	 */
+	private Long version;
 }
@@ -16,9 +16,12 @@
 package org.kathrynhuxtable.heroes.service.bean;
 
 import java.util.List;
+import java.util.Map;
 
 import lombok.Data;
 
+import org.kathrynhuxtable.heroes.uifilter.bean.UIFilterBucket;
+
 /**
  * Return filtered search results.
  * The total records is necessary for pagination.
@@ -26,5 +29,21 @@ import lombok.Data;
 @Data
 public class UIFilterResult<T> {
 	private List<T> records;
-	private int totalRecords;
+	private Integer totalRecords;
+
+	/**
+	 * Whether more records follow. When the filter requests a slice, the total is not
+	 * counted and this is the only indication of further pages.
+	 */
+	private boolean more;
+
+	/**
+	 * The continuation token for the next page, or {@code null} if there are no more records.
+	 */
+	private String cursor;
+
+	/**
+	 * The buckets of each requested facet, by attribute.
+	 */
+	private Map<String, List<UIFilterBucket>> facets;
 }
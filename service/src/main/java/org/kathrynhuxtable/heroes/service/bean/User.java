@@ -24,7 +24,7 @@ import lombok.Data;
  * The User transfer object for the REST services.
  */
 @Data
-@Builder
+@Builder(toBuilder = true)
 public class User {
 
 	private long id;
@@ -16,24 +16,29 @@
 package org.kathrynhuxtable.heroes.service.persistence;
 
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import org.kathrynhuxtable.heroes.service.persistence.domain.HeroDO;
 import org.kathrynhuxtable.heroes.uifilter.UIFilterService;
 import org.kathrynhuxtable.heroes.uifilter.bean.UIFilter;
+import org.kathrynhuxtable.heroes.uifilter.bean.UIFilterPage;
 
 /**
  * The Hero DAO. Provides some convenience methods using custom predicates generated
  * by Specification classes.
  */
 @Repository
-public interface HeroDAO extends JpaRepository<HeroDO, Long>, JpaSpecificationExecutor<HeroDO>, UIFilterService<HeroDO> {
+public interface HeroDAO extends JpaRepository<HeroDO, Long>, JpaSpecificationExecutor<HeroDO>, UIFilterService<HeroDO>,
+		HeroDAOCustom {
 
 	/**
 	 * Return the number of rows matched by filter criteria without paginating.
@@ -43,7 +48,24 @@ public interface HeroDAO extends JpaRepository<HeroDO, Long>, JpaSpecificationEx
 	 * @return the number of rows matched by the filter criteria.
 	 */
 	default long countByFilter(UIFilter filter) {
-		return countByFilter(filter, this);
+		return countByFilter(filter, HeroDO.class);
+	}
+
+	/**
+	 * Whether any Hero is missing a search key, as rows written before the keys existed are.
+	 *
+	 * @return {@code true} if a Hero has a value without its search key.
+	 */
+	@Query("select count(h) > 0 from HeroDO h where (h.nameKey is null and h.name is not null)"
+			+ " or (h.powerKey is null and h.power is not null)"
+			+ " or (h.alterEgoKey is null and h.alterEgo is not null)")
+	boolean existsMissingSearchKeys();
+
+	/**
+	 * Discard the cached Hero counts. Must be called after Heroes are saved or deleted.
+	 */
+	default void invalidateCounts() {
+		invalidateCounts(HeroDO.class);
 	}
 
 	/**
@@ -56,6 +78,54 @@ public interface HeroDAO extends JpaRepository<HeroDO, Long>, JpaSpecificationEx
 		return findByFilter(filter, "id", this);
 	}
 
+	/**
+	 * Check a filter against the Hero attributes.
+	 *
+	 * @param filter the UIFilter object.
+	 */
+	default void validateFilter(UIFilter filter) {
+		validate(filter, HeroDO.class);
+	}
+
+	/**
+	 * Check a filter for an export against the Hero attributes and the export budget.
+	 *
+	 * @param filter the UIFilter object.
+	 */
+	default void validateExportFilter(UIFilter filter) {
+		validateExport(filter, HeroDO.class);
+	}
+
+	/**
+	 * Find a page by filter. Supports offset and keyset pagination, sorting, and filtering on values.
+	 *
+	 * @param filter the UIFilter object.
+	 * @return a page of matching HeroDO records, with the cursor for the next page.
+	 */
+	default UIFilterPage<HeroDO> findPageByFilter(UIFilter filter) {
+		return findPageByFilter(filter, "id", HeroDO.class);
+	}
+
+	/**
+	 * Find a page by filter, returning only the requested fields of each Hero.
+	 *
+	 * @param filter the UIFilter object, with the fields to return.
+	 * @return a page of rows, each mapping attribute names to values.
+	 */
+	default UIFilterPage<Map<String, Object>> findProjectionByFilter(UIFilter filter) {
+		return findProjectionByFilter(filter, "id", HeroDO.class);
+	}
+
+	/**
+	 * Pass every Hero matched by a filter to a consumer, ignoring pagination.
+	 *
+	 * @param filter   the UIFilter object.
+	 * @param consumer receives each matching HeroDO.
+	 */
+	default void forEachByFilter(UIFilter filter, Consumer<? super HeroDO> consumer) {
+		forEachByFilter(filter, "id", HeroDO.class, consumer);
+	}
+
 	/**
 	 * Return the top rated Heroes.
 	 *
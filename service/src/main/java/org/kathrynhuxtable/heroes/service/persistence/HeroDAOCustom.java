@@ -0,0 +1,63 @@
+/*
+ * Copyright 2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.heroes.service.persistence;
+
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.lang.NonNull;
+
+import org.kathrynhuxtable.heroes.uifilter.bean.UIFilter;
+
+/**
+ * Hero DAO methods that write with a single statement, rather than loading and merging
+ * each Hero.
+ */
+public interface HeroDAOCustom {
+
+	/**
+	 * Update attributes of one Hero with a single UPDATE statement, without loading it.
+	 * The search keys of the changed attributes are set along with them, and the version
+	 * is incremented, since entity callbacks are not run for such statements.
+	 *
+	 * @param id      the Hero id.
+	 * @param values  the new values, by attribute name. A value may be {@code null}.
+	 * @param version the version the Hero must have, or {@code null} to update any version.
+	 * @return the number of rows updated, zero if there is no such Hero or it has another version.
+	 */
+	int updateById(long id, @NonNull Map<String, Object> values, Long version);
+
+	/**
+	 * Update attributes of every Hero matching a filter with a single UPDATE statement.
+	 * Pagination, sorting and fields of the filter are ignored, and a filter matching
+	 * every Hero is rejected. Must be called in a transaction.
+	 *
+	 * @param filter the UIFilter object.
+	 * @param values the new values, by attribute name. A value may be {@code null}.
+	 * @return the ids of the updated Heroes.
+	 */
+	List<Long> updateByFilter(@NonNull UIFilter filter, @NonNull Map<String, Object> values);
+
+	/**
+	 * Delete every Hero matching a filter with a single DELETE statement. Pagination,
+	 * sorting and fields of the filter are ignored, and a filter matching every Hero is
+	 * rejected. Must be called in a transaction.
+	 *
+	 * @param filter the UIFilter object.
+	 * @return the ids of the deleted Heroes.
+	 */
+	List<Long> deleteByFilter(@NonNull UIFilter filter);
+}
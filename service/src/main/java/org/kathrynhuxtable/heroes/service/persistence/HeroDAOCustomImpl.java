@@ -0,0 +1,163 @@
+/*
+ * Copyright 2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.heroes.service.persistence;
+
+import java.util.List;
+import java.util.Map;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.*;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import org.kathrynhuxtable.heroes.service.persistence.domain.HeroDO;
+import org.kathrynhuxtable.heroes.uifilter.FilterAttribute;
+import org.kathrynhuxtable.heroes.uifilter.FilterAttributes;
+import org.kathrynhuxtable.heroes.uifilter.FilterSpecification;
+import org.kathrynhuxtable.heroes.uifilter.InvalidFilterException;
+import org.kathrynhuxtable.heroes.uifilter.SearchKeys;
+import org.kathrynhuxtable.heroes.uifilter.UIFilterServiceImpl;
+import org.kathrynhuxtable.heroes.uifilter.bean.UIFilter;
+
+@Component
+public class HeroDAOCustomImpl implements HeroDAOCustom {
+
+	private static final String VERSION = "version";
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	@Override
+	@Transactional
+	public int updateById(long id, @NonNull Map<String, Object> values, Long version) {
+		CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+		CriteriaUpdate<HeroDO> update = cb.createCriteriaUpdate(HeroDO.class);
+		Root<HeroDO> root = update.from(HeroDO.class);
+		set(cb, update, root, values);
+		Predicate matchesId = cb.equal(root.get(getAttributes().getIdAttribute()), id);
+		update.where(version == null ? matchesId : cb.and(matchesId, cb.equal(root.get(VERSION), version)));
+		return entityManager.createQuery(update).executeUpdate();
+	}
+
+	/**
+	 * The matching ids are found first, so that the caller can bring the caches up to
+	 * date. The caller's transaction decides the isolation.
+	 */
+	@Override
+	@Transactional(propagation = Propagation.MANDATORY)
+	public List<Long> updateByFilter(@NonNull UIFilter filter, @NonNull Map<String, Object> values) {
+		List<Long> ids = findIds(filter);
+		if (!ids.isEmpty()) {
+			CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+			CriteriaUpdate<HeroDO> update = cb.createCriteriaUpdate(HeroDO.class);
+			Root<HeroDO> root = update.from(HeroDO.class);
+			set(cb, update, root, values);
+			update.where(buildPredicate(filter, root, update, cb));
+			entityManager.createQuery(update).executeUpdate();
+		}
+		return ids;
+	}
+
+	/**
+	 * The matching ids are found first, as for an update.
+	 */
+	@Override
+	@Transactional(propagation = Propagation.MANDATORY)
+	public List<Long> deleteByFilter(@NonNull UIFilter filter) {
+		List<Long> ids = findIds(filter);
+		if (!ids.isEmpty()) {
+			CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+			CriteriaDelete<HeroDO> delete = cb.createCriteriaDelete(HeroDO.class);
+			Root<HeroDO> root = delete.from(HeroDO.class);
+			delete.where(buildPredicate(filter, root, delete, cb));
+			entityManager.createQuery(delete).executeUpdate();
+		}
+		return ids;
+	}
+
+	private List<Long> findIds(UIFilter filter) {
+		CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+		CriteriaQuery<Long> cq = cb.createQuery(Long.class);
+		Root<HeroDO> root = cq.from(HeroDO.class);
+		cq.select(root.<Long>get(getAttributes().getIdAttribute())).where(buildPredicate(filter, root, cq, cb));
+		return entityManager.createQuery(cq).getResultList();
+	}
+
+	/**
+	 * Build the predicate of a bulk statement from the filter.
+	 *
+	 * @throws InvalidFilterException if the filter matches every Hero.
+	 */
+	private static Predicate buildPredicate(UIFilter filter, Root<HeroDO> root, CommonAbstractCriteria criteria,
+	                                        CriteriaBuilder cb) {
+		Predicate predicate = new FilterSpecification<HeroDO>(filter)
+				.setGlobalAttributes(UIFilterServiceImpl.GLOBAL_ATTRIBUTES)
+				.toPredicate(root, criteria, cb);
+		if (predicate == null) {
+			throw new InvalidFilterException("A filter is required to change Heroes in bulk");
+		}
+		return predicate;
+	}
+
+	/**
+	 * Add the assignments for the new values, for the search keys derived from them, and
+	 * for the next version.
+	 *
+	 * @throws InvalidFilterException if an attribute cannot be updated, or a value has the wrong type.
+	 */
+	private void set(CriteriaBuilder cb, CriteriaUpdate<HeroDO> update, Root<HeroDO> root, Map<String, Object> values) {
+		if (values.isEmpty()) {
+			throw new InvalidFilterException("No attributes to update");
+		}
+		FilterAttributes attributes = getAttributes();
+		values.forEach((name, value) -> {
+			FilterAttribute attribute = attributes.get(name);
+			if (isSearchKey(attributes, name) || attribute.segments().size() > 1
+					|| name.equals(attributes.getIdAttribute()) || name.equals(VERSION)) {
+				throw new InvalidFilterException("Attribute " + name + " cannot be updated");
+			}
+			if (value != null && !attribute.javaType().isInstance(value)) {
+				throw new InvalidFilterException("Invalid value for " + name + ": " + value);
+			}
+			setValue(cb, update, root, attribute, value);
+			if (attribute.searchKey() != null) {
+				setValue(cb, update, root, attribute.searchKey(), SearchKeys.normalize((String) value));
+			}
+		});
+		update.set(root.<Long>get(VERSION), cb.sum(root.<Long>get(VERSION), 1L));
+	}
+
+	private static void setValue(CriteriaBuilder cb, CriteriaUpdate<HeroDO> update, Root<HeroDO> root,
+	                             FilterAttribute attribute, Object value) {
+		if (value == null) {
+			update.set(root.get(attribute.path()), cb.nullLiteral(attribute.javaType()));
+		} else {
+			update.set(root.get(attribute.path()), value);
+		}
+	}
+
+	private static boolean isSearchKey(FilterAttributes attributes, String name) {
+		return attributes.getAttributes().stream()
+				.anyMatch(attribute -> attribute.searchKey() != null && attribute.searchKey().path().equals(name));
+	}
+
+	private FilterAttributes getAttributes() {
+		return FilterAttributes.of(entityManager.getMetamodel().entity(HeroDO.class));
+	}
+}
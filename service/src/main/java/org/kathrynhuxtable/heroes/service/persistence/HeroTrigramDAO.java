@@ -0,0 +1,74 @@
+/*
+ * Copyright 2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.heroes.service.persistence;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import org.kathrynhuxtable.heroes.service.persistence.domain.HeroDO;
+import org.kathrynhuxtable.heroes.service.persistence.domain.HeroTrigramDO;
+import org.kathrynhuxtable.heroes.service.persistence.domain.HeroTrigramKey;
+
+/**
+ * The Hero trigram index DAO.
+ */
+@Repository
+public interface HeroTrigramDAO extends JpaRepository<HeroTrigramDO, HeroTrigramKey> {
+
+	/**
+	 * Delete the index entries of a Hero in one statement. The persistence context is
+	 * flushed first and cleared after, so that entries persisted earlier in the
+	 * transaction can be persisted again.
+	 *
+	 * @param heroId the Hero id.
+	 */
+	@Modifying(flushAutomatically = true, clearAutomatically = true)
+	@Query("delete from HeroTrigramDO t where t.entityId = :heroId")
+	void deleteByHeroId(@Param("heroId") Long heroId);
+
+	/**
+	 * Delete the index entries of many Heroes in one statement, flushing and clearing
+	 * the persistence context as for a single Hero.
+	 *
+	 * @param heroIds the Hero ids.
+	 */
+	@Modifying(flushAutomatically = true, clearAutomatically = true)
+	@Query("delete from HeroTrigramDO t where t.entityId in :heroIds")
+	void deleteByHeroIdIn(@Param("heroIds") Collection<Long> heroIds);
+
+	/**
+	 * Count the index entries of Heroes that no longer exist.
+	 *
+	 * @return the number of orphaned entries.
+	 */
+	@Query("select count(t) from HeroTrigramDO t where not exists (select h.id from HeroDO h where h.id = t.entityId)")
+	long countOrphans();
+
+	/**
+	 * Find the Heroes without index entries. Most should have some, but a Hero whose
+	 * indexed attributes are all shorter than a trigram has none.
+	 *
+	 * @return the Heroes without index entries.
+	 */
+	@Query("select h from HeroDO h where not exists (select t.entityId from HeroTrigramDO t where t.entityId = h.id)")
+	List<HeroDO> findUnindexedHeroes();
+}
@@ -46,7 +46,9 @@ public class AvatarDO {
     @Column(name = "MIME_TYPE", columnDefinition = "VARCHAR(64)")
     private String mimeType;
 
-    @Lob
-    @Column(name = "AVATAR", columnDefinition = "BLOB")
-    private byte[] avatar;
+    /**
+     * The SHA-256 of the image, which names it in the AvatarStore.
+     */
+    @Column(name = "HASH", columnDefinition = "CHAR(64)")
+    private String hash;
 }
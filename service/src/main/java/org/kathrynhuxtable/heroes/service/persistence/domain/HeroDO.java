@@ -16,6 +16,7 @@
 package org.kathrynhuxtable.heroes.service.persistence.domain;
 
 import java.util.Date;
+import java.util.Objects;
 
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
@@ -24,19 +25,32 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.stereotype.Indexed;
 
+import org.kathrynhuxtable.heroes.uifilter.SearchKey;
+import org.kathrynhuxtable.heroes.uifilter.SearchKeys;
+import org.kathrynhuxtable.heroes.uifilter.TrigramIndexed;
+
 /**
- * The Hero object in the database.
+ * The Hero object in the database. The name, power and alter ego have a trigram index,
+ * maintained by the HeroTrigramIndexer, and indexed search keys holding their normalized
+ * values, which filters and sorts use in place of the values themselves.
  */
 @Entity
-@Table(name = "HERO", schema = "APP")
+@Table(name = "HERO", schema = "APP", indexes = {
+        @Index(name = "HERO_NAME_KEY", columnList = "NAME_KEY"),
+        @Index(name = "HERO_POWER_KEY", columnList = "POWER_KEY"),
+        @Index(name = "HERO_ALTER_EGO_KEY", columnList = "ALTER_EGO_KEY")
+})
 @Indexed
 @Data
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
+@TrigramIndexed(value = HeroTrigramDO.class, attributes = {"name", "power", "alterEgo"})
 public class HeroDO {
 
-    @SequenceGenerator(name = "Hero_Gen", sequenceName = "HERO_SEQ", allocationSize = 1, initialValue = 1)
+    // Ids are handed out fifty at a time by the pooled optimizer, so that batched inserts
+    // don't need a sequence call per row.
+    @SequenceGenerator(name = "Hero_Gen", sequenceName = "HERO_SEQ", allocationSize = 50, initialValue = 1)
     @Id
     @GeneratedValue(generator = "Hero_Gen")
     @Column(name = "ID")
@@ -56,4 +70,44 @@ public class HeroDO {
 
     @Column(name = "POWER_DATE")
     private Date powerDate;
+
+    @SearchKey("name")
+    @Column(name = "NAME_KEY", columnDefinition = "VARCHAR(128)")
+    private String nameKey;
+
+    @SearchKey("power")
+    @Column(name = "POWER_KEY", columnDefinition = "VARCHAR(128)")
+    private String powerKey;
+
+    @SearchKey("alterEgo")
+    @Column(name = "ALTER_EGO_KEY", columnDefinition = "VARCHAR(128)")
+    private String alterEgoKey;
+
+    // Checked and incremented by every update. The default fills in existing rows when
+    // the column is added.
+    @Version
+    @Column(name = "VERSION", columnDefinition = "BIGINT DEFAULT 0 NOT NULL")
+    private Long version;
+
+    /**
+     * Set the search keys from the current values.
+     */
+    @PrePersist
+    @PreUpdate
+    public void updateSearchKeys() {
+        nameKey = SearchKeys.normalize(name);
+        powerKey = SearchKeys.normalize(power);
+        alterEgoKey = SearchKeys.normalize(alterEgo);
+    }
+
+    /**
+     * Whether the search keys match the current values.
+     *
+     * @return true if the search keys are up to date.
+     */
+    public boolean hasSearchKeys() {
+        return Objects.equals(nameKey, SearchKeys.normalize(name))
+                && Objects.equals(powerKey, SearchKeys.normalize(power))
+                && Objects.equals(alterEgoKey, SearchKeys.normalize(alterEgo));
+    }
 }
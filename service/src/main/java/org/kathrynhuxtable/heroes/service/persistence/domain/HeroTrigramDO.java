@@ -0,0 +1,53 @@
+/*
+ * Copyright 2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.heroes.service.persistence.domain;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.stereotype.Indexed;
+
+/**
+ * An entry of the Hero trigram index: one of the trigrams of one attribute of a Hero.
+ * The lookup index leads with the attribute and trigram, and covers the Hero id.
+ */
+@Entity
+@Table(name = "HERO_TRIGRAM", schema = "APP", indexes = {
+        @Index(name = "HERO_TRIGRAM_LOOKUP", columnList = "ATTRIBUTE, TRIGRAM, HERO_ID"),
+        @Index(name = "HERO_TRIGRAM_HERO", columnList = "HERO_ID")
+})
+@Indexed
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@IdClass(value = HeroTrigramKey.class)
+public class HeroTrigramDO {
+
+    @Id
+    @Column(name = "ATTRIBUTE", columnDefinition = "VARCHAR(32)")
+    private String attribute;
+
+    @Id
+    @Column(name = "TRIGRAM", columnDefinition = "VARCHAR(3)")
+    private String trigram;
+
+    @Id
+    @Column(name = "HERO_ID")
+    private Long entityId;
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.heroes.service.readmodel;
+
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+
+import org.kathrynhuxtable.heroes.uifilter.bean.UIFilterMatchMode;
+
+/**
+ * A column of a HeroSnapshot. Rows are addressed by index, and null values sort
+ * higher than any other value, as they do in the database.
+ */
+interface Column {
+
+	boolean isNull(int row);
+
+	/**
+	 * The value of a row, as it would be found in the entity.
+	 *
+	 * @param row the row index.
+	 * @return the value, or {@code null}.
+	 */
+	Object get(int row);
+
+	int compare(int row1, int row2);
+
+	/**
+	 * Compare the value of a row with a sort key value from a cursor.
+	 *
+	 * @param row the row index.
+	 * @param key the key value, or {@code null}.
+	 * @return negative, zero, or positive as the row value is before, equal to, or after the key.
+	 */
+	int compareToKey(int row, Object key);
+
+	/**
+	 * Build a predicate matching the rows of this column that satisfy a filter. Rows
+	 * with null values never match, as in SQL.
+	 *
+	 * @param matchMode the match mode, or {@code null} for the column's default.
+	 * @param value     the filter value.
+	 * @return a predicate on row indices.
+	 */
+	IntPredicate matcher(UIFilterMatchMode matchMode, Object value);
+
+	/**
+	 * Build a column for a changed snapshot, copying the values of unchanged rows from
+	 * this column.
+	 *
+	 * @param rows   for each row of the new column, the row of this column holding its
+	 *               value, or a negative value if the row has a new value.
+	 * @param values the new values, by row of the new column.
+	 * @return the new column.
+	 */
+	Column update(int[] rows, IntFunction<Object> values);
+}
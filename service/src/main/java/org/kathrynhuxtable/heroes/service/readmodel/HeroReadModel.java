@@ -0,0 +1,401 @@
+/*
+ * Copyright 2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.heroes.service.readmodel;
+
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.PropertyAccessorFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Order;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import org.kathrynhuxtable.heroes.service.HeroBulkChangeEvent;
+import org.kathrynhuxtable.heroes.service.HeroChangeEvent;
+import org.kathrynhuxtable.heroes.service.persistence.HeroDAO;
+import org.kathrynhuxtable.heroes.service.persistence.domain.HeroDO;
+import org.kathrynhuxtable.heroes.uifilter.FilterAttributes;
+import org.kathrynhuxtable.heroes.uifilter.FilterBudget;
+import org.kathrynhuxtable.heroes.uifilter.FilterFacets;
+import org.kathrynhuxtable.heroes.uifilter.InvalidFilterException;
+import org.kathrynhuxtable.heroes.uifilter.UIFilterCursor;
+import org.kathrynhuxtable.heroes.uifilter.UIFilterService;
+import org.kathrynhuxtable.heroes.uifilter.UIFilterServiceImpl;
+import org.kathrynhuxtable.heroes.uifilter.bean.UIFilter;
+import org.kathrynhuxtable.heroes.uifilter.bean.UIFilterBucket;
+import org.kathrynhuxtable.heroes.uifilter.bean.UIFilterData;
+import org.kathrynhuxtable.heroes.uifilter.bean.UIFilterOperator;
+import org.kathrynhuxtable.heroes.uifilter.bean.UIFilterPage;
+
+/**
+ * Serves Hero filter queries from an in-memory snapshot of the Hero table rather than
+ * from the database. Enabled by setting {@code heroes.read-model} to {@code memory}.
+ * <p>
+ * The snapshot is loaded on first use, and each HeroChangeEvent is applied to it once
+ * the change commits. Filters are checked by the database implementation first, and
+ * strings are matched and sorted by their search keys, as in the database, so both
+ * implementations accept the same filters and give the same order, cursors, and totals.
+ * </p>
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "heroes", name = "read-model", havingValue = "memory")
+public class HeroReadModel implements UIFilterService<HeroDO> {
+
+	private static final String ID_ATTRIBUTE = "id";
+
+	private final HeroDAO heroDao;
+	private final FilterAttributes attributes;
+	private final Object lock = new Object();
+	private volatile HeroSnapshot snapshot;
+
+	public HeroReadModel(HeroDAO heroDao, EntityManagerFactory entityManagerFactory) {
+		this.heroDao = heroDao;
+		this.attributes = FilterAttributes.of(entityManagerFactory.getMetamodel().entity(HeroDO.class));
+	}
+
+	@Override
+	public long countByFilter(@NonNull UIFilter filter,
+	                          @NonNull JpaSpecificationExecutor<HeroDO> dao) {
+		HeroSnapshot heroes = getSnapshot();
+		return IntStream.range(0, heroes.size()).filter(buildPredicate(heroes, filter)).count();
+	}
+
+	@Override
+	public long countByFilter(@NonNull UIFilter filter,
+	                          @NonNull Class<HeroDO> domainClass) {
+		validate(filter, domainClass);
+		HeroSnapshot heroes = getSnapshot();
+		return IntStream.range(0, heroes.size()).filter(buildPredicate(heroes, filter)).count();
+	}
+
+	@Override
+	public void invalidateCounts(@NonNull Class<HeroDO> domainClass) {
+		// Counts are not cached, since the snapshot is always current.
+	}
+
+	@Override
+	public List<HeroDO> findByFilter(@NonNull UIFilter filter,
+	                                 String defaultField,
+	                                 @NonNull JpaSpecificationExecutor<HeroDO> dao) {
+		// An unpaginated filter returns the first page the budget allows.
+		int size = getBudget().checkRows(filter);
+		HeroSnapshot heroes = getSnapshot();
+		int[] rows = select(heroes, filter, buildSort(filter, defaultField));
+
+		// Pages start on a multiple of the page size, as a Pageable would.
+		int first = filter.getRows() == null || filter.getRows() == 0 || filter.getFirst() == null ? 0 : filter.getFirst();
+		int from = Math.min(first / size * size, rows.length);
+		int to = Math.min(from + size, rows.length);
+		return toHeroes(heroes, rows, from, to);
+	}
+
+	@Override
+	public void validate(@NonNull UIFilter filter,
+	                     @NonNull Class<HeroDO> domainClass) {
+		heroDao.validate(filter, domainClass);
+	}
+
+	@Override
+	public void validateExport(@NonNull UIFilter filter,
+	                           @NonNull Class<HeroDO> domainClass) {
+		// A scan of the snapshot holds no connection, so exports are not costed.
+		validate(filter, domainClass);
+	}
+
+	@Override
+	public FilterBudget getBudget() {
+		return heroDao.getBudget();
+	}
+
+	@Override
+	public UIFilterPage<HeroDO> findPageByFilter(@NonNull UIFilter filter,
+	                                             String defaultField,
+	                                             @NonNull Class<HeroDO> domainClass) {
+		validate(filter, domainClass);
+		HeroSnapshot heroes = getSnapshot();
+
+		// Sort on the search keys, with the id as the last key, as the database does.
+		Sort sort = toSearchKeys(buildSort(filter, defaultField));
+		if (sort.getOrderFor(ID_ATTRIBUTE) == null) {
+			sort = sort.and(Sort.by(Sort.Direction.ASC, ID_ATTRIBUTE));
+		}
+		String signature = UIFilterCursor.signature(sort);
+
+		// Bound the page by the same budget as the database. An unpaginated filter gets the
+		// largest page allowed, read as a slice, and a scan is costed by the snapshot size.
+		FilterBudget.Allowance allowance = getBudget().check(attributes, filter, UIFilterServiceImpl.GLOBAL_ATTRIBUTES,
+				heroes::size);
+		boolean paginate = filter.getRows() != null && filter.getRows() > 0;
+		boolean seek = filter.getCursor() != null && !filter.getCursor().isBlank();
+		boolean slice = allowance.slice();
+		int first = !paginate || filter.getFirst() == null ? 0 : filter.getFirst();
+		int size = allowance.rows();
+
+		int[] rows = select(heroes, filter, sort);
+		int from = 0;
+		if (seek) {
+			List<Object> seekKeys = UIFilterCursor.decode(signature, filter.getCursor());
+			if (seekKeys.size() != sort.stream().count()) {
+				throw new InvalidFilterException("Cursor does not match the requested sort order");
+			}
+			from = seekPosition(heroes, rows, sort, seekKeys);
+		} else {
+			from = Math.min(first, rows.length);
+		}
+		int to = Math.min(from + size, rows.length);
+
+		UIFilterPage<HeroDO> page = new UIFilterPage<>();
+		page.setRecords(toHeroes(heroes, rows, from, to));
+		page.setMore(to < rows.length);
+		if (!slice) {
+			page.setTotalRecords((long) rows.length);
+		}
+		if (filter.getFacets() != null && !filter.getFacets().isEmpty()) {
+			page.setFacets(facets(heroes, rows, filter));
+		}
+		if (page.isMore()) {
+			int last = rows[to - 1];
+			page.setCursor(UIFilterCursor.encode(signature,
+					sort.stream().map(order -> heroes.column(order.getProperty()).get(last)).toList()));
+		}
+		return page;
+	}
+
+	@Override
+	public UIFilterPage<Map<String, Object>> findProjectionByFilter(@NonNull UIFilter filter,
+	                                                               String defaultField,
+	                                                               @NonNull Class<HeroDO> domainClass) {
+		if (filter.getFields() == null || filter.getFields().isEmpty()) {
+			throw new InvalidFilterException("A projection requires a list of fields");
+		}
+		UIFilterPage<HeroDO> heroes = findPageByFilter(filter, defaultField, domainClass);
+
+		Set<String> fields = new LinkedHashSet<>(filter.getFields());
+		buildSort(filter, defaultField).forEach(order -> fields.add(order.getProperty()));
+		fields.add(ID_ATTRIBUTE);
+
+		UIFilterPage<Map<String, Object>> page = new UIFilterPage<>();
+		page.setRecords(heroes.getRecords().stream()
+				.map(hero -> {
+					BeanWrapper wrapper = PropertyAccessorFactory.forBeanPropertyAccess(hero);
+					Map<String, Object> row = new LinkedHashMap<>();
+					fields.forEach(field -> row.put(field, wrapper.getPropertyValue(field)));
+					return row;
+				})
+				.toList());
+		page.setTotalRecords(heroes.getTotalRecords());
+		page.setMore(heroes.isMore());
+		page.setCursor(heroes.getCursor());
+		page.setFacets(heroes.getFacets());
+		return page;
+	}
+
+	@Override
+	public void forEachByFilter(@NonNull UIFilter filter,
+	                            String defaultField,
+	                            @NonNull Class<HeroDO> domainClass,
+	                            @NonNull Consumer<? super HeroDO> consumer) {
+		validate(filter, domainClass);
+		// Exports are meant to read every matching Hero, and a scan of the snapshot holds
+		// no connection, so the query budget does not apply.
+		HeroSnapshot heroes = getSnapshot();
+		for (int row : select(heroes, filter, toSearchKeys(buildSort(filter, defaultField)))) {
+			consumer.accept(heroes.get(row));
+		}
+	}
+
+	@Override
+	public Sort buildSort(@NonNull UIFilter filter,
+	                      String defaultField) {
+		return heroDao.buildSort(filter, defaultField);
+	}
+
+	/**
+	 * Find a Hero by id.
+	 *
+	 * @param id the Hero id.
+	 * @return the Hero, if found.
+	 */
+	public Optional<HeroDO> findById(long id) {
+		HeroSnapshot heroes = getSnapshot();
+		int row = heroes.find(id);
+		return row < 0 ? Optional.empty() : Optional.of(heroes.get(row));
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onHeroChange(HeroChangeEvent event) {
+		synchronized (lock) {
+			// If nothing is loaded yet, the change will be read with everything else.
+			if (snapshot != null) {
+				snapshot = event.isDeleted() ? snapshot.without(event.id()) : snapshot.with(event.hero());
+			}
+		}
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onHeroBulkChange(HeroBulkChangeEvent event) {
+		synchronized (lock) {
+			if (snapshot != null) {
+				snapshot = event.isDeleted() ? snapshot.without(event.ids()) : snapshot.with(event.heroes());
+			}
+		}
+	}
+
+	private HeroSnapshot getSnapshot() {
+		HeroSnapshot heroes = snapshot;
+		if (heroes == null) {
+			synchronized (lock) {
+				heroes = snapshot;
+				if (heroes == null) {
+					long start = System.nanoTime();
+					heroes = HeroSnapshot.of(heroDao.findAll());
+					snapshot = heroes;
+					log.info("Loaded " + heroes.size() + " heroes in " + (System.nanoTime() - start) / 1_000_000 + "ms");
+				}
+			}
+		}
+		return heroes;
+	}
+
+	/**
+	 * Find the matching rows in sort order.
+	 */
+	private int[] select(HeroSnapshot heroes, UIFilter filter, Sort sort) {
+		int[] rows = IntStream.range(0, heroes.size()).filter(buildPredicate(heroes, filter)).toArray();
+
+		// Rows are held in id order, so the default sort needs no work.
+		if (sort.isUnsorted() || isIdAscending(sort)) {
+			return rows;
+		}
+
+		List<Order> orders = sort.toList();
+		Column[] columns = orders.stream().map(order -> heroes.column(order.getProperty())).toArray(Column[]::new);
+		return Arrays.stream(rows)
+				.boxed()
+				.sorted((row1, row2) -> {
+					for (int i = 0; i < columns.length; i++) {
+						int c = columns[i].compare(row1, row2);
+						if (c != 0) {
+							return orders.get(i).isAscending() ? c : -c;
+						}
+					}
+					return 0;
+				})
+				.mapToInt(Integer::intValue)
+				.toArray();
+	}
+
+	/**
+	 * Find the position of the first row after the cursor's sort keys.
+	 */
+	private int seekPosition(HeroSnapshot heroes, int[] rows, Sort sort, List<Object> seekKeys) {
+		List<Order> orders = sort.toList();
+		Column[] columns = orders.stream().map(order -> heroes.column(order.getProperty())).toArray(Column[]::new);
+
+		// The rows are sorted, so search for the first one that follows the keys.
+		int low = 0;
+		int high = rows.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			int c = 0;
+			for (int i = 0; i < columns.length && c == 0; i++) {
+				c = columns[i].compareToKey(rows[mid], seekKeys.get(i));
+				c = orders.get(i).isAscending() ? c : -c;
+			}
+			if (c > 0) {
+				high = mid;
+			} else {
+				low = mid + 1;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Count the matching rows into the buckets of the filter's facets, in one pass.
+	 */
+	private Map<String, List<UIFilterBucket>> facets(HeroSnapshot heroes, int[] rows, UIFilter filter) {
+		FilterFacets facets = new FilterFacets(attributes, filter.getFacets());
+		for (int row : rows) {
+			facets.addRow(path -> heroes.column(path).get(row));
+		}
+		return facets.getFacets();
+	}
+
+	private IntPredicate buildPredicate(HeroSnapshot heroes, UIFilter filter) {
+		IntPredicate predicate = row -> true;
+		if (filter.getFilters() == null) {
+			return predicate;
+		}
+
+		for (Map.Entry<String, List<UIFilterData>> entry : filter.getFilters().entrySet()) {
+			boolean global = entry.getKey().equals(filter.getGlobalFieldName());
+			List<IntPredicate> inner = new ArrayList<>();
+			for (UIFilterData filterData : entry.getValue()) {
+				if (global) {
+					inner.add(UIFilterServiceImpl.GLOBAL_ATTRIBUTES.stream()
+							.map(attribute -> heroes.column(attribute).matcher(filterData.getMatchMode(), filterData.getValue()))
+							.reduce(row -> false, IntPredicate::or));
+				} else {
+					inner.add(heroes.column(entry.getKey()).matcher(filterData.getMatchMode(), filterData.getValue()));
+				}
+			}
+			if (inner.isEmpty()) {
+				continue;
+			}
+
+			UIFilterOperator operator = entry.getValue().stream()
+					.map(UIFilterData::getOperator)
+					.filter(Objects::nonNull)
+					.findFirst()
+					.orElse(UIFilterOperator.or);
+			predicate = predicate.and(switch (operator) {
+				case and -> inner.stream().reduce(row -> true, IntPredicate::and);
+				case or -> inner.stream().reduce(row -> false, IntPredicate::or);
+			});
+		}
+		return predicate;
+	}
+
+	private Sort toSearchKeys(Sort sort) {
+		return Sort.by(sort.stream()
+				.map(order -> order.withProperty(attributes.get(order.getProperty()).sortPath()))
+				.toList());
+	}
+
+	private static boolean isIdAscending(Sort sort) {
+		List<Order> orders = sort.toList();
+		return orders.get(0).getProperty().equals(ID_ATTRIBUTE) && orders.get(0).isAscending();
+	}
+
+	private static List<HeroDO> toHeroes(HeroSnapshot heroes, int[] rows, int from, int to) {
+		List<HeroDO> result = new ArrayList<>(Math.max(to - from, 0));
+		for (int i = from; i < to; i++) {
+			result.add(heroes.get(rows[i]));
+		}
+		return result;
+	}
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.heroes.service.readmodel;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.kathrynhuxtable.heroes.service.persistence.domain.HeroDO;
+import org.kathrynhuxtable.heroes.uifilter.InvalidFilterException;
+
+/**
+ * An immutable, column-oriented copy of the Hero table, with rows held in id order.
+ * A change builds a new snapshot, so readers never see a partly applied change. Only the
+ * changed Heroes are encoded, and the rows of the others are copied column by column.
+ * <p>
+ * Each search key is a column too, viewing the column of its attribute, so that rows
+ * can be sorted and cursors built on the same keys as in the database.
+ * </p>
+ */
+final class HeroSnapshot {
+
+	private static final Map<String, Function<HeroDO, Object>> GETTERS = Map.of(
+			"id", HeroDO::getId,
+			"name", HeroDO::getName,
+			"power", HeroDO::getPower,
+			"alterEgo", HeroDO::getAlterEgo,
+			"rating", HeroDO::getRating,
+			"powerDate", HeroDO::getPowerDate,
+			"version", HeroDO::getVersion);
+
+	private static final Map<String, String> SEARCH_KEYS = Map.of(
+			"nameKey", "name",
+			"powerKey", "power",
+			"alterEgoKey", "alterEgo");
+
+	private final int size;
+	private final LongColumn ids;
+	private final Map<String, Column> attributes;
+	private final Map<String, Column> columns;
+
+	private HeroSnapshot(int size, Map<String, Column> attributes) {
+		this.size = size;
+		this.ids = (LongColumn) attributes.get("id");
+		this.attributes = attributes;
+
+		Map<String, Column> map = new HashMap<>(attributes);
+		SEARCH_KEYS.forEach((key, attribute) -> map.put(key, ((StringColumn) attributes.get(attribute)).searchKeys()));
+		this.columns = Collections.unmodifiableMap(map);
+	}
+
+	static HeroSnapshot of(Collection<HeroDO> heroes) {
+		List<HeroDO> sorted = new ArrayList<>(heroes);
+		sorted.sort(Comparator.comparing(HeroDO::getId));
+
+		Map<String, Column> attributes = new HashMap<>();
+		attributes.put("id", LongColumn.of(Long.class, values(sorted, HeroDO::getId)));
+		attributes.put("name", StringColumn.of(values(sorted, HeroDO::getName)));
+		attributes.put("power", StringColumn.of(values(sorted, HeroDO::getPower)));
+		attributes.put("alterEgo", StringColumn.of(values(sorted, HeroDO::getAlterEgo)));
+		attributes.put("rating", LongColumn.of(Integer.class, values(sorted, HeroDO::getRating)));
+		attributes.put("powerDate", LongColumn.of(Date.class, values(sorted, HeroDO::getPowerDate)));
+		attributes.put("version", LongColumn.of(Long.class, values(sorted, HeroDO::getVersion)));
+		return new HeroSnapshot(sorted.size(), attributes);
+	}
+
+	int size() {
+		return size;
+	}
+
+	Column column(String attribute) {
+		Column column = columns.get(attribute);
+		if (column == null) {
+			throw new InvalidFilterException("Unknown attribute " + attribute + " for Hero");
+		}
+		return column;
+	}
+
+	/**
+	 * Find the row of a Hero.
+	 *
+	 * @param id the Hero id.
+	 * @return the row index, or a negative value if there is no such Hero.
+	 */
+	int find(long id) {
+		return ids.binarySearch(id);
+	}
+
+	/**
+	 * Build a Hero from a row. Each call returns a new object, so callers may modify it.
+	 *
+	 * @param row the row index.
+	 * @return the Hero.
+	 */
+	HeroDO get(int row) {
+		return HeroDO.builder()
+				.id((Long) ids.get(row))
+				.name((String) columns.get("name").get(row))
+				.power((String) columns.get("power").get(row))
+				.alterEgo((String) columns.get("alterEgo").get(row))
+				.rating((Integer) columns.get("rating").get(row))
+				.powerDate((Date) columns.get("powerDate").get(row))
+				.version((Long) columns.get("version").get(row))
+				.build();
+	}
+
+	HeroSnapshot with(HeroDO hero) {
+		return update(List.of(hero), Set.of());
+	}
+
+	HeroSnapshot without(long id) {
+		return update(List.of(), Set.of(id));
+	}
+
+	HeroSnapshot with(Collection<HeroDO> changed) {
+		return update(changed, Set.of());
+	}
+
+	HeroSnapshot without(Collection<Long> ids) {
+		return update(List.of(), new HashSet<>(ids));
+	}
+
+	/**
+	 * Build a snapshot with Heroes added or replaced, and others removed.
+	 */
+	private HeroSnapshot update(Collection<HeroDO> changed, Set<Long> removed) {
+		// A TreeMap keeps the changed Heroes in id order, the last change to a Hero winning.
+		Iterator<HeroDO> changes = changed.stream()
+				.collect(Collectors.toMap(HeroDO::getId, hero -> hero, (hero1, hero2) -> hero2, TreeMap::new))
+				.values()
+				.iterator();
+
+		// Merge the changed Heroes into the rows. Each new row either copies an old row,
+		// or takes a changed Hero, replacing the old row with the same id.
+		int[] rows = new int[size + changed.size()];
+		HeroDO[] heroes = new HeroDO[rows.length];
+		int count = 0;
+		int row = 0;
+		HeroDO next = changes.hasNext() ? changes.next() : null;
+		while (row < size || next != null) {
+			long id = row < size ? (Long) ids.get(row) : Long.MAX_VALUE;
+			if (next != null && next.getId() <= id) {
+				if (next.getId() == id) {
+					row++;
+				}
+				rows[count] = -1;
+				heroes[count++] = next;
+				next = changes.hasNext() ? changes.next() : null;
+			} else {
+				if (!removed.contains(id)) {
+					rows[count++] = row;
+				}
+				row++;
+			}
+		}
+
+		int[] sources = Arrays.copyOf(rows, count);
+		Map<String, Column> updated = new HashMap<>();
+		attributes.forEach((attribute, column) -> updated.put(attribute,
+				column.update(sources, i -> GETTERS.get(attribute).apply(heroes[i]))));
+		return new HeroSnapshot(count, updated);
+	}
+
+	private static <V> List<V> values(List<HeroDO> heroes, Function<HeroDO, V> getter) {
+		return heroes.stream().map(getter).toList();
+	}
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.heroes.service.readmodel;
+
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+
+import org.springframework.core.convert.ConversionService;
+import org.springframework.core.convert.support.DefaultConversionService;
+
+import org.kathrynhuxtable.heroes.uifilter.InvalidFilterException;
+import org.kathrynhuxtable.heroes.uifilter.bean.UIFilterMatchMode;
+
+/**
+ * A column of integer, long or date values, held as primitive longs with a null bitmap.
+ * Dates are held as epoch milliseconds.
+ */
+final class LongColumn implements Column {
+
+	private final Class<?> javaType;
+	private final long[] values;
+	private final BitSet nulls;
+
+	private LongColumn(Class<?> javaType, long[] values, BitSet nulls) {
+		this.javaType = javaType;
+		this.values = values;
+		this.nulls = nulls;
+	}
+
+	static LongColumn of(Class<?> javaType, List<?> rowValues) {
+		long[] values = new long[rowValues.size()];
+		BitSet nulls = new BitSet(rowValues.size());
+		for (int row = 0; row < values.length; row++) {
+			Object value = rowValues.get(row);
+			if (value == null) {
+				nulls.set(row);
+			} else {
+				values[row] = encode(value);
+			}
+		}
+		return new LongColumn(javaType, values, nulls);
+	}
+
+	/**
+	 * Find the row holding a value, for a column held in ascending order without nulls.
+	 *
+	 * @param value the value to find.
+	 * @return the row index, or a negative value if not found.
+	 */
+	int binarySearch(long value) {
+		return Arrays.binarySearch(values, value);
+	}
+
+	@Override
+	public boolean isNull(int row) {
+		return nulls.get(row);
+	}
+
+	@Override
+	public Object get(int row) {
+		if (nulls.get(row)) {
+			return null;
+		} else if (javaType == Integer.class) {
+			return (int) values[row];
+		} else if (javaType == Date.class) {
+			// The database returns dates as timestamps, so return the same type.
+			return new Timestamp(values[row]);
+		} else {
+			return values[row];
+		}
+	}
+
+	@Override
+	public int compare(int row1, int row2) {
+		boolean null1 = nulls.get(row1);
+		boolean null2 = nulls.get(row2);
+		if (null1 || null2) {
+			return Boolean.compare(null1, null2);
+		}
+		return Long.compare(values[row1], values[row2]);
+	}
+
+	@Override
+	public int compareToKey(int row, Object key) {
+		boolean rowNull = nulls.get(row);
+		if (rowNull || key == null) {
+			return Boolean.compare(rowNull, key == null);
+		}
+		return Long.compare(values[row], encode(key));
+	}
+
+	@Override
+	public IntPredicate matcher(UIFilterMatchMode matchMode, Object value) {
+		if (matchMode == null) {
+			matchMode = UIFilterMatchMode.equals;
+		}
+		if (matchMode == UIFilterMatchMode.in) {
+			long[] set = ((Collection<?>) value).stream()
+					.filter(Objects::nonNull)
+					.mapToLong(this::toLong)
+					.sorted()
+					.toArray();
+			return row -> !nulls.get(row) && Arrays.binarySearch(set, values[row]) >= 0;
+		} else if (matchMode == UIFilterMatchMode.between) {
+			List<?> range = (List<?>) value;
+			if (range.get(0) == null || range.get(1) == null) {
+				return row -> false;
+			}
+			long low = toLong(range.get(0));
+			long high = toLong(range.get(1));
+			return row -> !nulls.get(row) && values[row] >= low && values[row] <= high;
+		} else if (value == null) {
+			// Comparing with null is never true in SQL.
+			return row -> false;
+		}
+
+		long x = toLong(value);
+		return switch (matchMode) {
+			case equals -> row -> !nulls.get(row) && values[row] == x;
+			case notEquals -> row -> !nulls.get(row) && values[row] != x;
+			case lt -> row -> !nulls.get(row) && values[row] < x;
+			case lte -> row -> !nulls.get(row) && values[row] <= x;
+			case gt -> row -> !nulls.get(row) && values[row] > x;
+			case gte -> row -> !nulls.get(row) && values[row] >= x;
+			default -> throw new InvalidFilterException("Invalid matchmode: " + matchMode);
+		};
+	}
+
+	@Override
+	public LongColumn update(int[] rows, IntFunction<Object> newValues) {
+		long[] updated = new long[rows.length];
+		BitSet updatedNulls = new BitSet(rows.length);
+		for (int row = 0; row < rows.length; row++) {
+			if (rows[row] >= 0) {
+				updated[row] = values[rows[row]];
+				updatedNulls.set(row, nulls.get(rows[row]));
+			} else {
+				Object value = newValues.apply(row);
+				if (value == null) {
+					updatedNulls.set(row);
+				} else {
+					updated[row] = encode(value);
+				}
+			}
+		}
+		return new LongColumn(javaType, updated, updatedNulls);
+	}
+
+	private long toLong(Object value) {
+		ConversionService conversionService = DefaultConversionService.getSharedInstance();
+		if (!javaType.isInstance(value) && conversionService.canConvert(value.getClass(), javaType)) {
+			value = conversionService.convert(value, javaType);
+		}
+		return encode(value);
+	}
+
+	private static long encode(Object value) {
+		if (value instanceof Number n) {
+			return n.longValue();
+		} else if (value instanceof Date d) {
+			return d.getTime();
+		} else {
+			throw new InvalidFilterException("Cannot compare value " + value);
+		}
+	}
+}
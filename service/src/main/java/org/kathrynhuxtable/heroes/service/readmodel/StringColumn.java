@@ -0,0 +1,214 @@
+/*
+ * Copyright 2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.heroes.service.readmodel;
+
+import java.util.*;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+
+import org.kathrynhuxtable.heroes.uifilter.InvalidFilterException;
+import org.kathrynhuxtable.heroes.uifilter.SearchKeys;
+import org.kathrynhuxtable.heroes.uifilter.bean.UIFilterMatchMode;
+
+/**
+ * A dictionary-encoded column of strings. Each distinct value is held once, in a
+ * dictionary, and each row holds the index of its value.
+ * <p>
+ * As in the database, values are matched and sorted by their search keys, ignoring
+ * case and accents. A filter is evaluated once per dictionary entry rather than once per
+ * row, and each entry has a rank in search key order, so that sorting compares ranks.
+ * </p>
+ * <p>
+ * The dictionary is sorted by value. A change that adds no new value shares the
+ * dictionary of the column it was built from.
+ * </p>
+ */
+final class StringColumn implements Column {
+
+	private static final int NULL = -1;
+
+	private final String[] dictionary;
+	private final String[] keyDictionary;
+	private final int[] ranks;
+	private final int[] codes;
+
+	private StringColumn(String[] dictionary, String[] keyDictionary, int[] ranks, int[] codes) {
+		this.dictionary = dictionary;
+		this.keyDictionary = keyDictionary;
+		this.ranks = ranks;
+		this.codes = codes;
+	}
+
+	private StringColumn(String[] dictionary, String[] keyDictionary, int[] codes) {
+		this(dictionary, keyDictionary, ranks(keyDictionary), codes);
+	}
+
+	static StringColumn of(List<String> rowValues) {
+		String[] dictionary = rowValues.stream()
+				.filter(Objects::nonNull)
+				.distinct()
+				.sorted()
+				.toArray(String[]::new);
+		int[] codes = new int[rowValues.size()];
+		for (int row = 0; row < codes.length; row++) {
+			String value = rowValues.get(row);
+			codes[row] = value == null ? NULL : Arrays.binarySearch(dictionary, value);
+		}
+		return new StringColumn(dictionary, Arrays.stream(dictionary).map(SearchKeys::normalize).toArray(String[]::new),
+				codes);
+	}
+
+	/**
+	 * A view of this column holding the search key of each value rather than the value,
+	 * which is what the database sorts on and what its cursors hold.
+	 *
+	 * @return the view, sharing the rows of this column.
+	 */
+	StringColumn searchKeys() {
+		return new StringColumn(keyDictionary, keyDictionary, ranks, codes);
+	}
+
+	@Override
+	public boolean isNull(int row) {
+		return codes[row] == NULL;
+	}
+
+	@Override
+	public Object get(int row) {
+		return codes[row] == NULL ? null : dictionary[codes[row]];
+	}
+
+	@Override
+	public int compare(int row1, int row2) {
+		return Integer.compare(rank(codes[row1]), rank(codes[row2]));
+	}
+
+	@Override
+	public int compareToKey(int row, Object key) {
+		boolean rowNull = codes[row] == NULL;
+		if (rowNull || key == null) {
+			return Boolean.compare(rowNull, key == null);
+		}
+		return keyDictionary[codes[row]].compareTo(SearchKeys.normalize((String) key));
+	}
+
+	@Override
+	public IntPredicate matcher(UIFilterMatchMode matchMode, Object value) {
+		if (matchMode == null) {
+			matchMode = UIFilterMatchMode.contains;
+		}
+
+		boolean[] accepted = new boolean[dictionary.length];
+		Predicate<String> predicate = predicate(matchMode, value);
+		for (int code = 0; code < dictionary.length; code++) {
+			accepted[code] = predicate.test(keyDictionary[code]);
+		}
+		return row -> codes[row] != NULL && accepted[codes[row]];
+	}
+
+	@Override
+	public StringColumn update(int[] rows, IntFunction<Object> values) {
+		int[] updated = new int[rows.length];
+		boolean added = false;
+		for (int row = 0; row < rows.length; row++) {
+			if (rows[row] >= 0) {
+				updated[row] = codes[rows[row]];
+			} else {
+				String value = (String) values.apply(row);
+				int code = value == null ? NULL : Arrays.binarySearch(dictionary, value);
+				added |= value != null && code < 0;
+				updated[row] = code;
+			}
+		}
+		if (!added) {
+			return new StringColumn(dictionary, keyDictionary, ranks, updated);
+		}
+
+		// Build a new dictionary of the values still in use, normalizing only the new ones.
+		boolean[] used = new boolean[dictionary.length];
+		for (int row : rows) {
+			if (row >= 0 && codes[row] != NULL) {
+				used[codes[row]] = true;
+			}
+		}
+		SortedMap<String, String> keys = new TreeMap<>();
+		for (int code = 0; code < dictionary.length; code++) {
+			if (used[code]) {
+				keys.put(dictionary[code], keyDictionary[code]);
+			}
+		}
+		for (int row = 0; row < rows.length; row++) {
+			if (rows[row] < 0 && values.apply(row) instanceof String value) {
+				keys.computeIfAbsent(value, SearchKeys::normalize);
+			}
+		}
+		String[] newDictionary = keys.keySet().toArray(String[]::new);
+		for (int row = 0; row < rows.length; row++) {
+			Object value = rows[row] >= 0 ? get(rows[row]) : values.apply(row);
+			updated[row] = value == null ? NULL : Arrays.binarySearch(newDictionary, value);
+		}
+		return new StringColumn(newDictionary, keys.values().toArray(String[]::new), updated);
+	}
+
+	private static Predicate<String> predicate(UIFilterMatchMode matchMode, Object value) {
+		if (matchMode == UIFilterMatchMode.in) {
+			Set<String> set = new HashSet<>();
+			((Collection<?>) value).forEach(v -> set.add(SearchKeys.normalize((String) v)));
+			return set::contains;
+		} else if (matchMode == UIFilterMatchMode.between) {
+			List<?> range = (List<?>) value;
+			String low = normalize(range.get(0));
+			String high = normalize(range.get(1));
+			return s -> s.compareTo(low) >= 0 && s.compareTo(high) <= 0;
+		}
+
+		String x = normalize(value);
+		return switch (matchMode) {
+			case startsWith -> s -> s.startsWith(x);
+			case contains -> s -> s.contains(x);
+			case notContains -> s -> !s.contains(x);
+			case endsWith -> s -> s.endsWith(x);
+			case equals -> s -> s.equals(x);
+			case notEquals -> s -> !s.equals(x);
+			case lt -> s -> s.compareTo(x) < 0;
+			case lte -> s -> s.compareTo(x) <= 0;
+			case gt -> s -> s.compareTo(x) > 0;
+			case gte -> s -> s.compareTo(x) >= 0;
+			default -> throw new InvalidFilterException("Invalid matchmode: " + matchMode);
+		};
+	}
+
+	private static String normalize(Object value) {
+		if (!(value instanceof String s)) {
+			throw new InvalidFilterException("Match requires a string value, not " + value);
+		}
+		return SearchKeys.normalize(s);
+	}
+
+	/**
+	 * Rank the entries of a dictionary by search key. Values with the same search key
+	 * have the same rank.
+	 */
+	private static int[] ranks(String[] keyDictionary) {
+		String[] keys = Arrays.stream(keyDictionary).distinct().sorted().toArray(String[]::new);
+		return Arrays.stream(keyDictionary).mapToInt(key -> Arrays.binarySearch(keys, key)).toArray();
+	}
+
+	private int rank(int code) {
+		return code == NULL ? Integer.MAX_VALUE : ranks[code];
+	}
+}
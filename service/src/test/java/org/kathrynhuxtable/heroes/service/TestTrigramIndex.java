@@ -0,0 +1,153 @@
+/*
+ * Copyright 2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.heroes.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import org.kathrynhuxtable.heroes.service.persistence.HeroDAO;
+import org.kathrynhuxtable.heroes.service.persistence.InMemoryDatabase;
+import org.kathrynhuxtable.heroes.service.persistence.domain.HeroDO;
+import org.kathrynhuxtable.heroes.service.readmodel.HeroReadModel;
+import org.kathrynhuxtable.heroes.uifilter.bean.UIFilter;
+import org.kathrynhuxtable.heroes.uifilter.bean.UIFilterData;
+import org.kathrynhuxtable.heroes.uifilter.bean.UIFilterMatchMode;
+import org.kathrynhuxtable.heroes.uifilter.bean.UIFilterPage;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that contains and global filters, which the database narrows by the trigram
+ * index, find the same Heroes as the read model, which scans them.
+ */
+public class TestTrigramIndex {
+
+	private static final String[] NAMES = {"Émile", "Zorro", "Ångström", "Bravo", "Çelik", "Delta", "Ébène",
+			"Alphonse", "Mile High", "Smiley"};
+	private static final String[] VALUES = {"mil", "MIL", "émi", "ngs", "orr", "elt", "alp", "ile hi", "xyz"};
+
+	private static AnnotationConfigApplicationContext context;
+	private static HeroDAO heroDao;
+	private static TransactionTemplate transaction;
+
+	@Configuration
+	@Import({InMemoryDatabase.class, HeroTrigramIndexer.class})
+	static class Config {
+	}
+
+	@BeforeClass
+	public static void setUp() {
+		context = InMemoryDatabase.open("trigrams", Config.class);
+		heroDao = context.getBean(HeroDAO.class);
+		transaction = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+
+		List<HeroDO> heroes = new ArrayList<>();
+		for (int i = 0; i < NAMES.length; i++) {
+			heroes.add(HeroDO.builder()
+					.name(NAMES[i])
+					.power(NAMES[(i + 3) % NAMES.length])
+					.alterEgo(NAMES[(i + 7) % NAMES.length])
+					.rating(i % 5)
+					.build());
+		}
+		transaction.executeWithoutResult(status ->
+				context.publishEvent(HeroBulkChangeEvent.updated(heroDao.saveAll(heroes))));
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		context.close();
+	}
+
+	@Test
+	public void testContains() {
+		for (String value : VALUES) {
+			assertSameMatches(UIFilter.builder().addFilter("name", contains(value)).build());
+			assertSameMatches(UIFilter.builder().addFilter("alterEgo", contains(value)).build());
+		}
+		assertFalse(find(UIFilter.builder().addFilter("name", contains("mil")).build()).isEmpty());
+	}
+
+	@Test
+	public void testGlobal() {
+		for (String value : VALUES) {
+			assertSameMatches(UIFilter.builder().globalFieldName("global").addFilter("global", contains(value)).build());
+		}
+	}
+
+	@Test
+	public void testChanges() {
+		HeroDO renamed = heroDao.findAll().get(0);
+		renamed.setName("Gizmo");
+		transaction.executeWithoutResult(status ->
+				context.publishEvent(HeroChangeEvent.saved(heroDao.save(renamed))));
+		assertEquals(List.of(renamed.getId()),
+				find(UIFilter.builder().addFilter("name", contains("izm")).build()));
+
+		// Changing a Hero twice in one transaction replaces its entries twice.
+		HeroDO twice = heroDao.findAll().get(1);
+		transaction.executeWithoutResult(status -> {
+			twice.setName("Widget");
+			context.publishEvent(HeroChangeEvent.saved(heroDao.save(twice)));
+			twice.setName("Gadget");
+			context.publishEvent(HeroChangeEvent.saved(heroDao.save(twice)));
+		});
+		assertEquals(List.of(twice.getId()), find(UIFilter.builder().addFilter("name", contains("adg")).build()));
+
+		long deleted = heroDao.findAll().get(2).getId();
+		transaction.executeWithoutResult(status -> {
+			heroDao.deleteById(deleted);
+			context.publishEvent(HeroChangeEvent.deleted(deleted));
+		});
+
+		for (String value : new String[]{"izm", "idg", "adg", "mil", "orr"}) {
+			assertSameMatches(UIFilter.builder().addFilter("name", contains(value)).build());
+			assertSameMatches(UIFilter.builder().globalFieldName("global").addFilter("global", contains(value)).build());
+		}
+	}
+
+	/**
+	 * Check that the database finds the same Heroes as the read model, loaded afresh.
+	 */
+	private static void assertSameMatches(UIFilter filter) {
+		filter.setRows(100);
+		HeroReadModel readModel = new HeroReadModel(heroDao, context.getBean(EntityManagerFactory.class));
+		assertEquals(ids(readModel.findPageByFilter(filter, "id", HeroDO.class)), find(filter));
+	}
+
+	private static List<Long> find(UIFilter filter) {
+		filter.setRows(100);
+		return ids(heroDao.findPageByFilter(filter));
+	}
+
+	private static UIFilterData contains(String value) {
+		return UIFilterData.builder().value(value).matchMode(UIFilterMatchMode.contains).build();
+	}
+
+	private static List<Long> ids(UIFilterPage<HeroDO> page) {
+		return page.getRecords().stream().map(HeroDO::getId).toList();
+	}
+}
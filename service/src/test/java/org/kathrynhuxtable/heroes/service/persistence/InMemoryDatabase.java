@@ -0,0 +1,92 @@
+/*
+ * Copyright 2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.heroes.service.persistence;
+
+import java.util.HashMap;
+import java.util.Map;
+import javax.sql.DataSource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+
+/**
+ * An in-memory Derby database holding the Hero tables, configured as the resources
+ * module configures the real one, but without the services.
+ */
+@Configuration
+@EnableJpaRepositories({"org.kathrynhuxtable.heroes.service.persistence", "org.kathrynhuxtable.heroes.uifilter"})
+@EnableTransactionManagement
+public class InMemoryDatabase {
+
+	private static final String URL_PROPERTY = "heroes.test.database.url";
+
+	/**
+	 * Start a context over a new in-memory database.
+	 *
+	 * @param name    the database name, which must differ between tests.
+	 * @param configs the configuration classes, which must import this one.
+	 * @return the context, to be closed by the caller.
+	 */
+	public static AnnotationConfigApplicationContext open(String name, Class<?>... configs) {
+		System.setProperty(URL_PROPERTY, "jdbc:derby:memory:" + name + ";create=true");
+		return new AnnotationConfigApplicationContext(configs);
+	}
+
+	@Bean
+	public HikariDataSource dataSource() {
+		HikariDataSource dataSource = new HikariDataSource();
+		dataSource.setDriverClassName("org.apache.derby.jdbc.EmbeddedDriver");
+		dataSource.setJdbcUrl(System.getProperty(URL_PROPERTY, "jdbc:derby:memory:heroes;create=true"));
+		dataSource.setUsername("");
+		dataSource.setPassword("");
+		return dataSource;
+	}
+
+	@Bean
+	public LocalContainerEntityManagerFactoryBean entityManagerFactory(DataSource dataSource) {
+		HibernateJpaVendorAdapter vendorAdapter = new HibernateJpaVendorAdapter();
+		vendorAdapter.setGenerateDdl(true);
+
+		LocalContainerEntityManagerFactoryBean factory = new LocalContainerEntityManagerFactoryBean();
+		factory.setJpaVendorAdapter(vendorAdapter);
+		factory.setPackagesToScan("org.kathrynhuxtable.heroes.service.persistence");
+		factory.setDataSource(dataSource);
+
+		Map<String, Object> jpaProperties = new HashMap<>();
+		// Compiled filter plans share criteria queries between executions, so copy them on execution.
+		jpaProperties.put("hibernate.criteria.copy_tree", true);
+		jpaProperties.put("hibernate.jdbc.batch_size", 50);
+		jpaProperties.put("hibernate.order_inserts", true);
+		factory.setJpaPropertyMap(jpaProperties);
+		return factory;
+	}
+
+	@Bean
+	public PlatformTransactionManager transactionManager(EntityManagerFactory entityManagerFactory) {
+		JpaTransactionManager txManager = new JpaTransactionManager();
+		txManager.setEntityManagerFactory(entityManagerFactory);
+		return txManager;
+	}
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.heroes.service.readmodel;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import org.kathrynhuxtable.heroes.service.persistence.HeroDAO;
+import org.kathrynhuxtable.heroes.service.persistence.InMemoryDatabase;
+import org.kathrynhuxtable.heroes.service.persistence.domain.HeroDO;
+import org.kathrynhuxtable.heroes.uifilter.bean.UIFilter;
+import org.kathrynhuxtable.heroes.uifilter.bean.UIFilterData;
+import org.kathrynhuxtable.heroes.uifilter.bean.UIFilterMatchMode;
+import org.kathrynhuxtable.heroes.uifilter.bean.UIFilterPage;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the same filters through the database and the read model, walking the cursors
+ * of each to the end.
+ */
+public class TestReadModelParity {
+
+	private static final String[] NAMES = {"Émile", "emile", "Zorro", "zorro", "Ångström", "angstrom", "Bravo",
+			"bravo", "Çelik", "celik", "Delta", "Ébène", "ebene", "alpha", "Alpha", "ALPHA", "Eve"};
+
+	private static AnnotationConfigApplicationContext context;
+	private static HeroDAO heroDao;
+	private static HeroReadModel readModel;
+
+	@BeforeClass
+	public static void setUp() {
+		context = InMemoryDatabase.open("parity", InMemoryDatabase.class);
+		heroDao = context.getBean(HeroDAO.class);
+
+		List<HeroDO> heroes = new ArrayList<>();
+		for (int i = 0; i < NAMES.length; i++) {
+			heroes.add(HeroDO.builder()
+					.name(NAMES[i])
+					.power(NAMES[NAMES.length - 1 - i])
+					.alterEgo(NAMES[(i * 7) % NAMES.length])
+					.rating(i % 4)
+					.powerDate(new Date(1700000000000L + i % 3 * 86400000L))
+					.build());
+		}
+		heroDao.saveAll(heroes);
+
+		readModel = new HeroReadModel(heroDao, context.getBean(EntityManagerFactory.class));
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		context.close();
+	}
+
+	@Test
+	public void testSortByName() {
+		assertSamePages(UIFilter.builder().addSortField("name", 1).build());
+		assertSamePages(UIFilter.builder().addSortField("name", -1).build());
+	}
+
+	@Test
+	public void testSortByRatingAndPower() {
+		assertSamePages(UIFilter.builder().addSortField("rating", -1).addSortField("power", 1).build());
+	}
+
+	@Test
+	public void testSortByDate() {
+		assertSamePages(UIFilter.builder().addSortField("powerDate", 1).addSortField("alterEgo", -1).build());
+	}
+
+	@Test
+	public void testFilterAndSort() {
+		assertSamePages(UIFilter.builder()
+				.addFilter("name", UIFilterData.builder().value("E").matchMode(UIFilterMatchMode.startsWith).build())
+				.addSortField("alterEgo", 1)
+				.build());
+	}
+
+	/**
+	 * Walk the pages of a filter through both implementations, checking that each page
+	 * has the same Heroes, total, and cursor.
+	 */
+	private static void assertSamePages(UIFilter filter) {
+		filter.setRows(4);
+		int pages = 0;
+		do {
+			UIFilterPage<HeroDO> expected = heroDao.findPageByFilter(filter);
+			UIFilterPage<HeroDO> actual = readModel.findPageByFilter(filter, "id", HeroDO.class);
+			assertEquals(ids(expected), ids(actual));
+			assertEquals(expected.getTotalRecords(), actual.getTotalRecords());
+			assertEquals(expected.isMore(), actual.isMore());
+			assertEquals(expected.getCursor(), actual.getCursor());
+			filter.setCursor(expected.getCursor());
+			pages++;
+		} while (filter.getCursor() != null);
+		assertTrue(pages > 1);
+	}
+
+	private static List<Long> ids(UIFilterPage<HeroDO> page) {
+		return page.getRecords().stream().map(HeroDO::getId).toList();
+	}
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.heroes.uifilter;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import jakarta.persistence.criteria.Path;
+
+import org.kathrynhuxtable.heroes.uifilter.bean.UIFilterMatchMode;
+
+/**
+ * A filterable attribute of an entity, possibly reached through embedded objects or
+ * single-valued associations.
+ *
+ * @param path       the attribute path, with segments separated by dots.
+ * @param segments   the attribute names along the path.
+ * @param javaType   the Java type of the attribute, with primitives boxed.
+ * @param matchModes the match modes supported by the attribute.
+ * @param sortable   whether the attribute may be used for sorting.
+ * @param searchKey  the attribute holding the normalized form of this one, or {@code null}.
+ */
+public record FilterAttribute(String path, List<String> segments, Class<?> javaType,
+                              Set<UIFilterMatchMode> matchModes, boolean sortable, FilterAttribute searchKey) {
+
+	public boolean isString() {
+		return javaType == String.class;
+	}
+
+	/**
+	 * The match mode used when a filter does not specify one.
+	 *
+	 * @return the default match mode.
+	 */
+	public UIFilterMatchMode defaultMatchMode() {
+		return isString() ? UIFilterMatchMode.contains : UIFilterMatchMode.equals;
+	}
+
+	/**
+	 * Normalize a string value of a filter on this attribute, as its predicate compares it.
+	 * Values are normalized like the search key if there is one, and otherwise lower cased.
+	 * The values of an in match are only normalized if there is a search key.
+	 *
+	 * @param value the value.
+	 * @return the normalized value.
+	 */
+	public String normalize(String value) {
+		return searchKey != null ? SearchKeys.normalize(value) : value.toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * Copy this attribute with a search key.
+	 *
+	 * @param key the attribute holding the normalized form of this one.
+	 * @return the copy.
+	 */
+	FilterAttribute withSearchKey(FilterAttribute key) {
+		return new FilterAttribute(path, segments, javaType, matchModes, sortable, key);
+	}
+
+	/**
+	 * The path to sort on, which is the search key if there is one.
+	 *
+	 * @return the attribute path.
+	 */
+	public String sortPath() {
+		return searchKey == null ? path : searchKey.path();
+	}
+
+	/**
+	 * Resolve the attribute from a query root.
+	 *
+	 * @param root the query root.
+	 * @return the attribute path.
+	 */
+	public Path<?> resolve(Path<?> root) {
+		Path<?> path = root;
+		for (String segment : segments) {
+			path = path.get(segment);
+		}
+		return path;
+	}
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright 2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.heroes.uifilter;
+
+import java.lang.reflect.Field;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import jakarta.persistence.metamodel.Attribute.PersistentAttributeType;
+import jakarta.persistence.metamodel.EntityType;
+import jakarta.persistence.metamodel.ManagedType;
+import jakarta.persistence.metamodel.SingularAttribute;
+import org.springframework.lang.NonNull;
+import org.springframework.util.ClassUtils;
+
+import org.kathrynhuxtable.heroes.uifilter.bean.UIFilter;
+import org.kathrynhuxtable.heroes.uifilter.bean.UIFilterData;
+import org.kathrynhuxtable.heroes.uifilter.bean.UIFilterFacet;
+import org.kathrynhuxtable.heroes.uifilter.bean.UIFilterMatchMode;
+import org.kathrynhuxtable.heroes.uifilter.bean.UIFilterSort;
+
+import static org.kathrynhuxtable.heroes.uifilter.bean.UIFilterMatchMode.*;
+
+/**
+ * The registry of filterable and sortable attributes of an entity, built once from the
+ * JPA metamodel. Attributes of embedded objects and single-valued associations are
+ * included as dotted paths.
+ */
+public final class FilterAttributes {
+
+	private static final Map<Class<?>, FilterAttributes> REGISTRY = new ConcurrentHashMap<>();
+
+	/**
+	 * How many associations deep to follow. Stops cycles between entities.
+	 */
+	private static final int MAXIMUM_DEPTH = 2;
+
+	private static final Set<UIFilterMatchMode> STRING_MATCH_MODES =
+			Collections.unmodifiableSet(EnumSet.allOf(UIFilterMatchMode.class));
+	private static final Set<UIFilterMatchMode> COMPARABLE_MATCH_MODES =
+			Collections.unmodifiableSet(EnumSet.of(equals, notEquals, in, lt, lte, gt, gte, between));
+	private static final Set<UIFilterMatchMode> OBJECT_MATCH_MODES =
+			Collections.unmodifiableSet(EnumSet.of(equals, notEquals, in));
+
+	private final String entityName;
+	private final String idAttribute;
+	private final Map<String, FilterAttribute> attributes;
+	private final Class<?> trigramIndex;
+	private final Set<String> trigramAttributes;
+
+	private FilterAttributes(EntityType<?> entityType) {
+		this.entityName = entityType.getName();
+		this.idAttribute = entityType.getSingularAttributes().stream()
+				.filter(SingularAttribute::isId)
+				.map(SingularAttribute::getName)
+				.findFirst()
+				.orElse(null);
+
+		Map<String, FilterAttribute> map = new HashMap<>();
+		Map<String, String> searchKeys = new HashMap<>();
+		addAttributes(map, searchKeys, entityType, new ArrayList<>(), 0);
+		searchKeys.forEach((source, key) -> {
+			if (!map.containsKey(source) || !map.get(source).isString()) {
+				throw new IllegalStateException("Search key " + key + " does not match a string attribute of " + entityName);
+			}
+			map.put(source, map.get(source).withSearchKey(map.get(key)));
+		});
+		this.attributes = Collections.unmodifiableMap(map);
+
+		TrigramIndexed indexed = entityType.getJavaType().getAnnotation(TrigramIndexed.class);
+		this.trigramIndex = indexed == null ? null : indexed.value();
+		this.trigramAttributes = indexed == null ? Set.of() : Set.of(indexed.attributes());
+	}
+
+	/**
+	 * Find the attributes of an entity, building them on first use.
+	 *
+	 * @param entityType the entity type from the JPA metamodel.
+	 * @return the attributes of the entity.
+	 */
+	public static FilterAttributes of(@NonNull EntityType<?> entityType) {
+		return REGISTRY.computeIfAbsent(entityType.getJavaType(), c -> new FilterAttributes(entityType));
+	}
+
+	/**
+	 * Find an attribute by path.
+	 *
+	 * @param path the attribute path, with segments separated by dots.
+	 * @return the attribute.
+	 * @throws InvalidFilterException if the entity has no such filterable attribute.
+	 */
+	public FilterAttribute get(String path) {
+		FilterAttribute attribute = attributes.get(path);
+		if (attribute == null) {
+			throw new InvalidFilterException("Unknown attribute " + path + " for " + entityName);
+		}
+		return attribute;
+	}
+
+	public boolean contains(String path) {
+		return attributes.containsKey(path);
+	}
+
+	public Collection<FilterAttribute> getAttributes() {
+		return attributes.values();
+	}
+
+	/**
+	 * The name of the id attribute.
+	 *
+	 * @return the id attribute name.
+	 * @throws InvalidFilterException if the entity has no single id attribute.
+	 */
+	public String getIdAttribute() {
+		if (idAttribute == null) {
+			throw new InvalidFilterException("No id attribute for " + entityName);
+		}
+		return idAttribute;
+	}
+
+	/**
+	 * The trigram index entity, if the entity is annotated with {@link TrigramIndexed}.
+	 *
+	 * @return the index entity class, or {@code null}.
+	 */
+	public Class<?> getTrigramIndex() {
+		return trigramIndex;
+	}
+
+	/**
+	 * Whether all of the given attributes have a trigram index.
+	 *
+	 * @param paths the attribute paths.
+	 * @return true if every attribute is indexed.
+	 */
+	public boolean isTrigramIndexed(Collection<String> paths) {
+		return trigramIndex != null && !paths.isEmpty() && trigramAttributes.containsAll(paths);
+	}
+
+	/**
+	 * Check that a filter only refers to known attributes, with supported match modes and
+	 * values of the right form, only sorts on sortable attributes, and only requests known
+	 * fields and valid facets.
+	 *
+	 * @param filter           the UIFilter object.
+	 * @param globalAttributes the attributes included in global searches.
+	 * @throws InvalidFilterException if the filter is not valid.
+	 */
+	public void validate(@NonNull UIFilter filter, @NonNull Collection<String> globalAttributes) {
+		if (filter.getSortFields() != null) {
+			for (UIFilterSort sortField : filter.getSortFields()) {
+				if (sortField.getField() == null || !get(sortField.getField()).sortable()) {
+					throw new InvalidFilterException("Cannot sort " + entityName + " on " + sortField.getField());
+				}
+			}
+		}
+
+		if (filter.getFields() != null) {
+			filter.getFields().forEach(this::get);
+		}
+
+		if (filter.getFacets() != null) {
+			filter.getFacets().forEach(this::validate);
+		}
+
+		if (filter.getFilters() != null) {
+			for (Map.Entry<String, List<UIFilterData>> entry : filter.getFilters().entrySet()) {
+				boolean global = entry.getKey().equals(filter.getGlobalFieldName());
+				for (UIFilterData filterData : entry.getValue()) {
+					if (global) {
+						for (String attribute : globalAttributes) {
+							validate(get(attribute), filterData);
+						}
+					} else {
+						validate(get(entry.getKey()), filterData);
+					}
+				}
+			}
+		}
+	}
+
+	private void validate(UIFilterFacet facet) {
+		FilterAttribute attribute = get(facet.getField());
+		if (facet.getInterval() != null && facet.getUnit() != null) {
+			throw new InvalidFilterException("A facet may have an interval or a unit, but not both, for " + attribute.path());
+		} else if (facet.getInterval() != null
+				&& (!Number.class.isAssignableFrom(attribute.javaType()) || facet.getInterval() <= 0)) {
+			throw new InvalidFilterException("A facet interval requires a numeric attribute and a positive width for "
+					+ attribute.path());
+		} else if (facet.getUnit() != null && !Date.class.isAssignableFrom(attribute.javaType())) {
+			throw new InvalidFilterException("A facet unit requires a date attribute for " + attribute.path());
+		} else if (facet.getLimit() != null && facet.getLimit() <= 0) {
+			throw new InvalidFilterException("A facet limit must be positive for " + attribute.path());
+		}
+	}
+
+	private void validate(FilterAttribute attribute, UIFilterData filterData) {
+		UIFilterMatchMode matchMode = filterData.getMatchMode() == null
+				? attribute.defaultMatchMode()
+				: filterData.getMatchMode();
+		if (!attribute.matchModes().contains(matchMode)) {
+			throw new InvalidFilterException("Match mode " + matchMode + " is not supported for " + attribute.path());
+		}
+
+		Object value = filterData.getValue();
+		switch (matchMode) {
+			case in -> {
+				if (!(value instanceof Collection<?>)) {
+					throw new InvalidFilterException("Match mode in requires a list of values for " + attribute.path());
+				}
+			}
+			case between -> {
+				if (!(value instanceof List<?> list) || list.size() != 2) {
+					throw new InvalidFilterException("Match mode between requires two values for " + attribute.path());
+				}
+			}
+			default -> {
+				if (attribute.isString() && !(value instanceof String)) {
+					throw new InvalidFilterException("Match mode " + matchMode + " requires a string value for " + attribute.path());
+				}
+			}
+		}
+	}
+
+	private static void addAttributes(Map<String, FilterAttribute> map, Map<String, String> searchKeys, ManagedType<?> type,
+	                                  List<String> prefix, int depth) {
+		for (SingularAttribute<?, ?> attribute : type.getSingularAttributes()) {
+			List<String> segments = new ArrayList<>(prefix);
+			segments.add(attribute.getName());
+
+			PersistentAttributeType attributeType = attribute.getPersistentAttributeType();
+			if (attributeType == PersistentAttributeType.BASIC) {
+				Class<?> javaType = ClassUtils.resolvePrimitiveIfNecessary(attribute.getJavaType());
+				boolean comparable = Comparable.class.isAssignableFrom(javaType);
+				Set<UIFilterMatchMode> matchModes = javaType == String.class
+						? STRING_MATCH_MODES
+						: comparable ? COMPARABLE_MATCH_MODES : OBJECT_MATCH_MODES;
+				String path = String.join(".", segments);
+				map.put(path, new FilterAttribute(path, List.copyOf(segments), javaType, matchModes, comparable, null));
+
+				if (attribute.getJavaMember() instanceof Field field && field.isAnnotationPresent(SearchKey.class)) {
+					List<String> source = new ArrayList<>(prefix);
+					source.add(field.getAnnotation(SearchKey.class).value());
+					searchKeys.put(String.join(".", source), path);
+				}
+			} else if (attributeType == PersistentAttributeType.EMBEDDED
+					|| (depth < MAXIMUM_DEPTH && (attributeType == PersistentAttributeType.MANY_TO_ONE
+					|| attributeType == PersistentAttributeType.ONE_TO_ONE))) {
+				if (attribute.getType() instanceof ManagedType<?> managedType) {
+					addAttributes(map, searchKeys, managedType, segments, depth + 1);
+				}
+			}
+		}
+	}
+}
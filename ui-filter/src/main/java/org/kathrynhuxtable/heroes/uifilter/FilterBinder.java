@@ -0,0 +1,87 @@
+/*
+ * Copyright 2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.heroes.uifilter;
+
+import java.util.List;
+import java.util.function.Function;
+
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.util.ClassUtils;
+
+import org.kathrynhuxtable.heroes.uifilter.bean.UIFilter;
+
+/**
+ * Renders the values of a filter in a JPA query, either as literals or as parameters
+ * of a compiled FilterPlan.
+ */
+interface FilterBinder {
+
+	/**
+	 * Locates a value in a filter, so that the same value can be found in any filter of
+	 * the same shape.
+	 */
+	@FunctionalInterface
+	interface ValueLocator {
+
+		Object locate(UIFilter filter, List<Object> seekKeys);
+
+		default ValueLocator andThen(Function<Object, Object> transform) {
+			return (filter, seekKeys) -> transform.apply(locate(filter, seekKeys));
+		}
+	}
+
+	/**
+	 * Render a single value.
+	 *
+	 * @param cb      the criteria builder.
+	 * @param type    the Java type of the value.
+	 * @param locator the location of the value in the filter.
+	 * @return an expression for the value.
+	 */
+	<V> Expression<V> value(CriteriaBuilder cb, Class<V> type, ValueLocator locator);
+
+	/**
+	 * Render an "in" predicate for a list of values.
+	 *
+	 * @param cb         the criteria builder.
+	 * @param expression the expression to match.
+	 * @param locator    the location of the list of values in the filter.
+	 * @return the predicate.
+	 */
+	Predicate in(CriteriaBuilder cb, Expression<?> expression, ValueLocator locator);
+
+	/**
+	 * Convert a filter value to the Java type of an attribute, if possible. JSON numbers,
+	 * for instance, arrive as Integer even when the attribute is a Long.
+	 *
+	 * @param value the value from the filter.
+	 * @param type  the Java type of the attribute.
+	 * @return the converted value, or the original value if it cannot be converted.
+	 */
+	@SuppressWarnings("unchecked")
+	static <V> V convert(Object value, Class<V> type) {
+		Class<?> targetType = ClassUtils.resolvePrimitiveIfNecessary(type);
+		ConversionService conversionService = DefaultConversionService.getSharedInstance();
+		if (value == null || targetType.isInstance(value) || !conversionService.canConvert(value.getClass(), targetType)) {
+			return (V) value;
+		}
+		return (V) conversionService.convert(value, targetType);
+	}
+}
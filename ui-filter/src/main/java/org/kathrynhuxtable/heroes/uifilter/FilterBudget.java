@@ -0,0 +1,345 @@
+/*
+ * Copyright 2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.heroes.uifilter;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Metrics;
+
+import org.kathrynhuxtable.heroes.uifilter.bean.UIFilter;
+import org.kathrynhuxtable.heroes.uifilter.bean.UIFilterData;
+import org.kathrynhuxtable.heroes.uifilter.bean.UIFilterMatchMode;
+
+/**
+ * The limits on the work a single filter query may do.
+ * <ul>
+ * <li>A page may hold at most {@code maxRows} rows. An unpaginated filter is served as
+ * a slice of that many rows, rather than as the whole table.</li>
+ * <li>A page may hold at most {@code maxPayload} values, counting each selected attribute
+ * of each row, so that a sparse fieldset may ask for more rows than a whole record.</li>
+ * <li>Each statement is cancelled by JDBC after {@code timeoutSeconds}.</li>
+ * <li>A filter with a scan predicate, one which no index can serve, on a table of more
+ * than {@code scanRows} rows is either rejected or downgraded to a slice, which reads
+ * only the page and skips the count.</li>
+ * <li>An export is not limited in rows, but its scan of a large table is always rejected,
+ * since it cannot be downgraded, and its statement is cancelled after
+ * {@code exportTimeoutSeconds}.</li>
+ * <li>The facets of a page may be counted in at most {@code maxFacetGroups} groups,
+ * which are the combinations of the bucket keys of every facet that occur.</li>
+ * </ul>
+ * <p>
+ * The fraction of each limit used by a query is published to Micrometer as
+ * {@code uifilter.budget.usage}, and rejections as {@code uifilter.budget.rejections}.
+ * </p>
+ */
+public class FilterBudget {
+
+	/**
+	 * The limits of the budget.
+	 */
+	public enum Limit {
+		rows, payload, time, scan, facets
+	}
+
+	/**
+	 * What to do with a scan of a large table.
+	 */
+	public enum ScanPolicy {
+		reject, downgrade
+	}
+
+	private final int maxRows;
+	private final long maxPayload;
+	private final int timeoutSeconds;
+	private final int exportTimeoutSeconds;
+	private final long scanRows;
+	private final ScanPolicy scanPolicy;
+	private final int maxFacetGroups;
+
+	private final Map<Limit, DistributionSummary> usage = new EnumMap<>(Limit.class);
+	private final Map<Limit, Counter> rejections = new EnumMap<>(Limit.class);
+	private final Counter downgrades;
+
+	/**
+	 * Construct a FilterBudget.
+	 *
+	 * @param maxRows              the maximum number of rows on a page.
+	 * @param maxPayload           the maximum number of values on a page.
+	 * @param timeoutSeconds       the JDBC timeout of each statement, or zero for none.
+	 * @param exportTimeoutSeconds the JDBC timeout of an export, or zero for none.
+	 * @param scanRows             the table size above which scans are rejected or downgraded.
+	 * @param scanPolicy           whether to reject or downgrade scans of large tables.
+	 * @param maxFacetGroups       the maximum number of groups counted for the facets of a page.
+	 */
+	public FilterBudget(int maxRows, long maxPayload, int timeoutSeconds, int exportTimeoutSeconds, long scanRows,
+	                    ScanPolicy scanPolicy, int maxFacetGroups) {
+		this.maxRows = maxRows;
+		this.maxPayload = maxPayload;
+		this.timeoutSeconds = timeoutSeconds;
+		this.exportTimeoutSeconds = exportTimeoutSeconds;
+		this.scanRows = scanRows;
+		this.scanPolicy = scanPolicy;
+		this.maxFacetGroups = maxFacetGroups;
+
+		for (Limit limit : Limit.values()) {
+			usage.put(limit, DistributionSummary.builder("uifilter.budget.usage")
+					.description("Fraction of the query budget used")
+					.tag("limit", limit.name())
+					.register(Metrics.globalRegistry));
+			rejections.put(limit, Counter.builder("uifilter.budget.rejections")
+					.description("Filter queries rejected for exceeding the query budget")
+					.tag("limit", limit.name())
+					.register(Metrics.globalRegistry));
+		}
+		this.downgrades = Counter.builder("uifilter.budget.downgrades")
+				.description("Filter queries downgraded to a slice for scanning a large table")
+				.register(Metrics.globalRegistry);
+	}
+
+	/**
+	 * Check a page request against the budget.
+	 *
+	 * @param attributes       the attributes of the domain class.
+	 * @param filter           the filter, already validated.
+	 * @param globalAttributes the attributes included in global searches.
+	 * @param tableSize        counts the rows of the table, if a scan must be costed.
+	 * @return the page allowed by the budget.
+	 * @throws FilterBudgetException if the filter exceeds the budget.
+	 */
+	public Allowance check(FilterAttributes attributes, UIFilter filter, List<String> globalAttributes,
+	                       LongSupplier tableSize) {
+		boolean paginate = filter.getRows() != null && filter.getRows() > 0;
+		int rows = paginate ? filter.getRows() : maxRows;
+		if (rows > maxRows) {
+			throw reject(Limit.rows, "A page may hold at most " + maxRows + " rows, but " + rows + " were requested");
+		}
+		record(Limit.rows, rows, maxRows);
+
+		long columns = filter.getFields() == null || filter.getFields().isEmpty()
+				? attributes.getAttributes().size()
+				: filter.getFields().size();
+		long payload = rows * columns;
+		if (payload > maxPayload) {
+			throw reject(Limit.payload, "A page may hold at most " + maxPayload + " values, but " + rows + " rows of "
+					+ columns + " attributes were requested");
+		}
+		record(Limit.payload, payload, maxPayload);
+
+		// An unpaginated filter is served as a slice, so it is not counted either.
+		boolean slice = !paginate || Boolean.TRUE.equals(filter.getSlice());
+		if (!slice) {
+			long size = largeScan(attributes, filter, globalAttributes, tableSize);
+			if (size > 0) {
+				if (scanPolicy == ScanPolicy.reject) {
+					throw rejectScan(size);
+				}
+				downgrades.increment();
+				slice = true;
+			}
+		}
+		return new Allowance(rows, slice);
+	}
+
+	/**
+	 * Check an export against the budget. An export reads every matching row, so it is not
+	 * limited in rows, but a scan of a large table is rejected whatever the scan policy.
+	 *
+	 * @param attributes       the attributes of the domain class.
+	 * @param filter           the filter, already validated.
+	 * @param globalAttributes the attributes included in global searches.
+	 * @param tableSize        counts the rows of the table, if a scan must be costed.
+	 * @throws FilterBudgetException if the filter must scan a large table.
+	 */
+	public void checkExport(FilterAttributes attributes, UIFilter filter, List<String> globalAttributes,
+	                        LongSupplier tableSize) {
+		long size = largeScan(attributes, filter, globalAttributes, tableSize);
+		if (size > 0) {
+			throw rejectScan(size);
+		}
+	}
+
+	/**
+	 * Check the number of rows of an unpaged query against the budget.
+	 *
+	 * @param filter the filter.
+	 * @return the number of rows allowed.
+	 * @throws FilterBudgetException if more rows were requested than allowed.
+	 */
+	public int checkRows(UIFilter filter) {
+		int rows = filter.getRows() != null && filter.getRows() > 0 ? filter.getRows() : maxRows;
+		if (rows > maxRows) {
+			throw reject(Limit.rows, "A page may hold at most " + maxRows + " rows, but " + rows + " were requested");
+		}
+		record(Limit.rows, rows, maxRows);
+		return rows;
+	}
+
+	/**
+	 * The maximum number of groups counted for the facets of a page. A facet query reads
+	 * one more, to find whether the limit is exceeded.
+	 *
+	 * @return the number of groups.
+	 */
+	public int getMaxFacetGroups() {
+		return maxFacetGroups;
+	}
+
+	/**
+	 * Check the number of groups read by a facet query against the budget.
+	 *
+	 * @param groups the number of groups read.
+	 * @throws FilterBudgetException if more groups were read than allowed.
+	 */
+	public void checkFacetGroups(int groups) {
+		if (groups > maxFacetGroups) {
+			throw reject(Limit.facets, "The facets may be counted in at most " + maxFacetGroups
+					+ " combinations of values. Request fewer facets, or facets with fewer distinct values");
+		}
+		record(Limit.facets, groups, maxFacetGroups);
+	}
+
+	/**
+	 * The JDBC timeout of each statement.
+	 *
+	 * @return the timeout in seconds, or zero for none.
+	 */
+	public int getTimeoutSeconds() {
+		return timeoutSeconds;
+	}
+
+	/**
+	 * The JDBC timeout of an export.
+	 *
+	 * @return the timeout in seconds, or zero for none.
+	 */
+	public int getExportTimeoutSeconds() {
+		return exportTimeoutSeconds;
+	}
+
+	/**
+	 * Record the time taken by a statement against the timeout.
+	 *
+	 * @param nanos the elapsed time.
+	 */
+	public void recordTime(long nanos) {
+		if (timeoutSeconds > 0) {
+			record(Limit.time, nanos, TimeUnit.SECONDS.toNanos(timeoutSeconds));
+		}
+	}
+
+	/**
+	 * Build the exception for a statement cancelled by its timeout.
+	 *
+	 * @param cause the timeout exception.
+	 * @return the exception to throw.
+	 */
+	public FilterBudgetException timedOut(RuntimeException cause) {
+		rejections.get(Limit.time).increment();
+		return new FilterBudgetException(Limit.time, "The filter query took more than " + timeoutSeconds
+				+ " seconds", cause);
+	}
+
+	/**
+	 * Build the exception for an export cancelled by its timeout.
+	 *
+	 * @param cause the timeout exception.
+	 * @return the exception to throw.
+	 */
+	public FilterBudgetException exportTimedOut(RuntimeException cause) {
+		rejections.get(Limit.time).increment();
+		return new FilterBudgetException(Limit.time, "The export took more than " + exportTimeoutSeconds
+				+ " seconds", cause);
+	}
+
+	/**
+	 * Find whether a filter must scan a table larger than the budget allows.
+	 *
+	 * @return the size of the table if so, or zero.
+	 */
+	private long largeScan(FilterAttributes attributes, UIFilter filter, List<String> globalAttributes,
+	                       LongSupplier tableSize) {
+		if (!hasScan(attributes, filter, globalAttributes)) {
+			return 0;
+		}
+		long size = tableSize.getAsLong();
+		record(Limit.scan, size, scanRows);
+		return size > scanRows ? size : 0;
+	}
+
+	private FilterBudgetException rejectScan(long size) {
+		return reject(Limit.scan, "The filter must scan " + size + " rows, but at most " + scanRows
+				+ " may be scanned. Use a startsWith or equals match, or a longer contains value");
+	}
+
+	/**
+	 * Whether any predicate of a filter must scan the table. A contains match can use the
+	 * trigram index if its attributes are indexed and the value is long enough, but no
+	 * index serves a notContains or endsWith match.
+	 */
+	private static boolean hasScan(FilterAttributes attributes, UIFilter filter, List<String> globalAttributes) {
+		if (filter.getFilters() == null) {
+			return false;
+		}
+		return filter.getFilters().entrySet().stream().anyMatch(entry -> {
+			boolean global = entry.getKey().equals(filter.getGlobalFieldName());
+			if (global && globalAttributes.isEmpty()) {
+				return false;
+			}
+			List<String> paths = global ? globalAttributes : List.of(entry.getKey());
+			FilterAttribute attribute = global ? null : attributes.get(entry.getKey());
+			return entry.getValue() != null && entry.getValue().stream()
+					.filter(data -> data.getValue() != null)
+					.anyMatch(data -> isScan(attributes, paths, attribute, data));
+		});
+	}
+
+	private static boolean isScan(FilterAttributes attributes, List<String> paths, FilterAttribute attribute,
+	                              UIFilterData data) {
+		UIFilterMatchMode matchMode = data.getMatchMode();
+		if (matchMode == null) {
+			matchMode = attribute == null ? UIFilterMatchMode.contains : attribute.defaultMatchMode();
+		}
+		return switch (matchMode) {
+			case notContains, endsWith -> true;
+			case contains -> !attributes.isTrigramIndexed(paths) || !Trigrams.indexable(data.getValue());
+			default -> false;
+		};
+	}
+
+	private FilterBudgetException reject(Limit limit, String message) {
+		rejections.get(limit).increment();
+		return new FilterBudgetException(limit, message);
+	}
+
+	private void record(Limit limit, double used, double allowed) {
+		usage.get(limit).record(used / allowed);
+	}
+
+	/**
+	 * The page allowed by the budget.
+	 *
+	 * @param rows  the number of rows on the page.
+	 * @param slice whether the page is read as a slice, without counting the total.
+	 */
+	public record Allowance(int rows, boolean slice) {
+	}
+}
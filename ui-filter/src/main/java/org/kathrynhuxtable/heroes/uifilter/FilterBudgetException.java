@@ -0,0 +1,48 @@
+/*
+ * Copyright 2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.heroes.uifilter;
+
+import java.io.Serial;
+
+/**
+ * Thrown when a UIFilter would exceed one of the limits of the query budget.
+ */
+public class FilterBudgetException extends InvalidFilterException {
+
+	@Serial
+	private static final long serialVersionUID = 1L;
+
+	private final FilterBudget.Limit limit;
+
+	public FilterBudgetException(FilterBudget.Limit limit, String message) {
+		super(message);
+		this.limit = limit;
+	}
+
+	public FilterBudgetException(FilterBudget.Limit limit, String message, Throwable cause) {
+		super(message, cause);
+		this.limit = limit;
+	}
+
+	/**
+	 * The limit that was exceeded.
+	 *
+	 * @return the limit.
+	 */
+	public FilterBudget.Limit getLimit() {
+		return limit;
+	}
+}
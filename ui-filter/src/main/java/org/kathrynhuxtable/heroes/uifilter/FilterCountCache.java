@@ -0,0 +1,180 @@
+/*
+ * Copyright 2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.heroes.uifilter;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.UnaryOperator;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import org.kathrynhuxtable.heroes.uifilter.bean.UIFilter;
+import org.kathrynhuxtable.heroes.uifilter.bean.UIFilterData;
+import org.kathrynhuxtable.heroes.uifilter.bean.UIFilterMatchMode;
+import org.kathrynhuxtable.heroes.uifilter.bean.UIFilterOperator;
+
+/**
+ * A bounded cache of filter counts, keyed by the canonical form of the filter's
+ * predicates and by the version of the domain class's table. Paging and sort are not
+ * part of the key, so every page of a table shares one count.
+ * <p>
+ * Changing a table bumps its version, so counts cached before the change are never
+ * found again and are left for eviction. Eviction uses Caffeine's TinyLFU policy, and
+ * the cache statistics are published to Micrometer as {@code uifilter.count.cache}.
+ * </p>
+ */
+class FilterCountCache {
+
+	private final Cache<List<Object>, Long> counts;
+	private final Map<Class<?>, AtomicLong> versions = new ConcurrentHashMap<>();
+
+	/**
+	 * Construct a FilterCountCache.
+	 *
+	 * @param maximumSize the maximum number of counts to keep.
+	 */
+	FilterCountCache(long maximumSize) {
+		this.counts = Caffeine.newBuilder()
+				.maximumSize(maximumSize)
+				.recordStats()
+				.build();
+		CaffeineCacheMetrics.monitor(Metrics.globalRegistry, counts, "uifilter.count.cache");
+	}
+
+	/**
+	 * Find the count for a filter, counting if not yet cached.
+	 *
+	 * @param domainClass      the domain class to query.
+	 * @param attributes       the attributes of the domain class.
+	 * @param filter           the filter.
+	 * @param globalAttributes the attributes included in global searches.
+	 * @param counter          counts the rows on a miss.
+	 * @return the count.
+	 */
+	long get(Class<?> domainClass, FilterAttributes attributes, UIFilter filter, List<String> globalAttributes,
+	         LongSupplier counter) {
+		// Read the version before counting, so a count that races with a change is
+		// stored under the old version.
+		List<Object> key = Arrays.asList(domainClass, version(domainClass).get(), predicates(attributes, filter, globalAttributes),
+				List.copyOf(globalAttributes));
+		Long count = counts.getIfPresent(key);
+		if (count == null) {
+			// Count outside the cache's lock. Concurrent misses on one key just count twice.
+			count = counter.getAsLong();
+			counts.put(key, count);
+		}
+		return count;
+	}
+
+	/**
+	 * Invalidate the cached counts of a domain class.
+	 *
+	 * @param domainClass the domain class whose table has changed.
+	 */
+	void invalidate(Class<?> domainClass) {
+		version(domainClass).incrementAndGet();
+	}
+
+	private AtomicLong version(Class<?> domainClass) {
+		return versions.computeIfAbsent(domainClass, c -> new AtomicLong());
+	}
+
+	/**
+	 * Build the canonical form of a filter's predicates. Fields are ordered by name,
+	 * and constraints by value, since both AND and OR are commutative. Default match
+	 * modes are filled in, and string values are normalized as the predicates compare
+	 * them, so that filters share a key exactly when they match the same rows.
+	 */
+	private static Map<String, List<Object>> predicates(FilterAttributes attributes, UIFilter filter,
+	                                                    List<String> globalAttributes) {
+		Map<String, List<Object>> predicates = new TreeMap<>();
+		if (filter.getFilters() == null) {
+			return predicates;
+		}
+
+		filter.getFilters().forEach((field, constraints) -> {
+			if (constraints == null || constraints.isEmpty()) {
+				return;
+			}
+			boolean global = field.equals(filter.getGlobalFieldName());
+			FilterAttribute attribute = global ? null : attributes.get(field);
+			// A global search matches each attribute with its own normalization, so its
+			// values can only be normalized if every attribute normalizes them alike.
+			boolean globalSearchKeys = global && globalAttributes.stream()
+					.allMatch(name -> attributes.get(name).searchKey() != null);
+
+			List<String> canonical = constraints.stream()
+					.map(data -> canonical(attribute, globalSearchKeys, data).toString())
+					.sorted()
+					.toList();
+			UIFilterOperator operator = canonical.size() == 1 ? null : constraints.stream()
+					.map(UIFilterData::getOperator)
+					.filter(Objects::nonNull)
+					.findFirst()
+					.orElse(UIFilterOperator.or);
+			predicates.put(field, Arrays.asList(global, operator, canonical));
+		});
+		return predicates;
+	}
+
+	private static List<Object> canonical(FilterAttribute attribute, boolean globalSearchKeys, UIFilterData data) {
+		// Global searches only cover string attributes.
+		boolean string = attribute == null || attribute.isString();
+		UIFilterMatchMode matchMode = data.getMatchMode() != null
+				? data.getMatchMode()
+				: string ? UIFilterMatchMode.contains : UIFilterMatchMode.equals;
+
+		UnaryOperator<String> normalizer;
+		boolean normalizeIn;
+		if (attribute == null) {
+			normalizer = globalSearchKeys ? SearchKeys::normalize : UnaryOperator.identity();
+			normalizeIn = globalSearchKeys;
+		} else {
+			normalizer = attribute::normalize;
+			normalizeIn = attribute.searchKey() != null;
+		}
+
+		Object value = data.getValue();
+		if (value instanceof Collection<?> values) {
+			// The values of an in match on a string without a search key are compared as given.
+			UnaryOperator<String> elementNormalizer = matchMode != UIFilterMatchMode.in || normalizeIn
+					? normalizer
+					: UnaryOperator.identity();
+			value = values.stream()
+					.map(v -> canonicalValue(attribute, v, elementNormalizer))
+					.toList();
+		} else {
+			value = canonicalValue(attribute, value, normalizer);
+		}
+		return Arrays.asList(matchMode, value);
+	}
+
+	private static Object canonicalValue(FilterAttribute attribute, Object value, UnaryOperator<String> normalizer) {
+		if (attribute != null && !attribute.isString()) {
+			Object converted = FilterBinder.convert(value, attribute.javaType());
+			return converted == null ? null : converted.getClass().getName() + ":" + converted;
+		} else if (value instanceof String s) {
+			return normalizer.apply(s);
+		} else {
+			return value;
+		}
+	}
+}
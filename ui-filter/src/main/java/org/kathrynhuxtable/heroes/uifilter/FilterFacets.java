@@ -0,0 +1,190 @@
+/*
+ * Copyright 2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.heroes.uifilter;
+
+import java.util.*;
+import java.util.function.Function;
+
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Root;
+
+import org.kathrynhuxtable.heroes.uifilter.bean.UIFilterBucket;
+import org.kathrynhuxtable.heroes.uifilter.bean.UIFilterFacet;
+import org.kathrynhuxtable.heroes.uifilter.bean.UIFilterFacetUnit;
+
+/**
+ * Counts the records matching a filter into the buckets of the requested facets.
+ * <p>
+ * All the facets are counted in a single pass. The database implementation groups the
+ * matching rows by the bucket keys of every facet at once, and each group is added to
+ * every facet, so the number of groups is the number of combinations of keys that
+ * actually occur. The in-memory implementation adds each matching row.
+ * </p>
+ */
+public final class FilterFacets {
+
+	/**
+	 * The number of values returned for counts by value, if not set by the facet.
+	 */
+	public static final int DEFAULT_LIMIT = 20;
+
+	private final List<Facet> facets;
+
+	/**
+	 * Construct a FilterFacets.
+	 *
+	 * @param attributes the attributes of the domain class.
+	 * @param requests   the facets, already validated.
+	 */
+	public FilterFacets(FilterAttributes attributes, List<UIFilterFacet> requests) {
+		this.facets = requests.stream()
+				.map(request -> new Facet(request, attributes.get(request.getField())))
+				.toList();
+	}
+
+	/**
+	 * Build the expressions to group the matching rows by.
+	 *
+	 * @param cb   the criteria builder.
+	 * @param root the root of the query.
+	 * @return the bucket keys of every facet, in order.
+	 */
+	@SuppressWarnings("unchecked")
+	List<Expression<?>> groupBy(CriteriaBuilder cb, Root<?> root) {
+		List<Expression<?>> keys = new ArrayList<>();
+		for (Facet facet : facets) {
+			Path<?> path = facet.attribute.resolve(root);
+			if (facet.request.getInterval() != null) {
+				// Literals rather than parameters, so that the select and group by match.
+				Expression<Long> interval = cb.literal(facet.request.getInterval());
+				keys.add(cb.prod(cb.quot((Expression<Number>) path, interval), interval));
+			} else if (facet.request.getUnit() != null) {
+				keys.add(cb.function("year", Integer.class, path));
+				if (facet.request.getUnit() != UIFilterFacetUnit.year) {
+					keys.add(cb.function("month", Integer.class, path));
+				}
+				if (facet.request.getUnit() == UIFilterFacetUnit.day) {
+					keys.add(cb.function("day", Integer.class, path));
+				}
+			} else {
+				keys.add(path);
+			}
+		}
+		return keys;
+	}
+
+	/**
+	 * Add a group of rows, as selected by the expressions of {@link #groupBy}.
+	 *
+	 * @param keys  the bucket keys of the group.
+	 * @param count the number of rows in the group.
+	 */
+	void add(Object[] keys, long count) {
+		int index = 0;
+		for (Facet facet : facets) {
+			Object key;
+			if (facet.request.getInterval() != null) {
+				key = keys[index] == null ? null : ((Number) keys[index]).longValue();
+				index++;
+			} else if (facet.request.getUnit() != null) {
+				int fields = facet.request.getUnit().ordinal() + 1;
+				key = keys[index] == null ? null : dateKey(Arrays.copyOfRange(keys, index, index + fields));
+				index += fields;
+			} else {
+				key = keys[index++];
+			}
+			facet.counts.merge(key, count, Long::sum);
+		}
+	}
+
+	/**
+	 * Add a single matching row.
+	 *
+	 * @param values the value of the row for each attribute.
+	 */
+	public void addRow(Function<String, Object> values) {
+		for (Facet facet : facets) {
+			Object value = values.apply(facet.attribute.path());
+			Object key;
+			if (value == null) {
+				key = null;
+			} else if (facet.request.getInterval() != null) {
+				// Truncate as integer division does in the database.
+				long interval = facet.request.getInterval();
+				key = ((Number) value).longValue() / interval * interval;
+			} else if (facet.request.getUnit() != null) {
+				Calendar calendar = Calendar.getInstance();
+				calendar.setTime((Date) value);
+				Object[] fields = {
+						calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH) + 1, calendar.get(Calendar.DAY_OF_MONTH)
+				};
+				key = dateKey(Arrays.copyOf(fields, facet.request.getUnit().ordinal() + 1));
+			} else {
+				key = value;
+			}
+			facet.counts.merge(key, 1L, Long::sum);
+		}
+	}
+
+	/**
+	 * Return the buckets of every facet. Histograms return every bucket in order of value,
+	 * and counts by value return the most frequent values first.
+	 *
+	 * @return the buckets, by attribute.
+	 */
+	@SuppressWarnings("unchecked")
+	public Map<String, List<UIFilterBucket>> getFacets() {
+		Map<String, List<UIFilterBucket>> result = new LinkedHashMap<>();
+		for (Facet facet : facets) {
+			Comparator<Map.Entry<Object, Long>> byValue = Map.Entry.comparingByKey(
+					Comparator.nullsLast((a, b) -> ((Comparable<Object>) a).compareTo(b)));
+			boolean histogram = facet.request.getInterval() != null || facet.request.getUnit() != null;
+			int limit = histogram ? Integer.MAX_VALUE
+					: facet.request.getLimit() == null ? DEFAULT_LIMIT : facet.request.getLimit();
+			result.put(facet.attribute.path(), facet.counts.entrySet().stream()
+					.sorted(histogram ? byValue : Map.Entry.<Object, Long>comparingByValue().reversed().thenComparing(byValue))
+					.limit(limit)
+					.map(entry -> new UIFilterBucket(entry.getKey(), entry.getValue()))
+					.toList());
+		}
+		return result;
+	}
+
+	private static String dateKey(Object[] fields) {
+		StringBuilder key = new StringBuilder(String.format("%04d", ((Number) fields[0]).intValue()));
+		for (int i = 1; i < fields.length; i++) {
+			key.append(String.format("-%02d", ((Number) fields[i]).intValue()));
+		}
+		return key.toString();
+	}
+
+	/**
+	 * A requested facet and its counts so far.
+	 */
+	private static class Facet {
+
+		private final UIFilterFacet request;
+		private final FilterAttribute attribute;
+		private final Map<Object, Long> counts = new HashMap<>();
+
+		Facet(UIFilterFacet request, FilterAttribute attribute) {
+			this.request = request;
+			this.attribute = attribute;
+		}
+	}
+}
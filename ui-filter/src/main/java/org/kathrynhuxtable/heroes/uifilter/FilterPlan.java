@@ -0,0 +1,223 @@
+/*
+ * Copyright 2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.heroes.uifilter;
+
+import java.util.*;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.*;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.util.ClassUtils;
+
+import org.kathrynhuxtable.heroes.uifilter.FilterBinder.ValueLocator;
+import org.kathrynhuxtable.heroes.uifilter.bean.UIFilter;
+
+/**
+ * A filter compiled into JPA criteria queries, with named parameters in place of the
+ * filter values. A plan is compiled once for each filter shape, and is executed for
+ * any filter of that shape by binding that filter's values.
+ * <p>
+ * If the filter requests fields, the plan also holds a projection query selecting only
+ * those attributes, along with the id and sort keys, as tuples rather than entities.
+ * </p>
+ */
+class FilterPlan<T> {
+
+	private final CriteriaQuery<T> selectQuery;
+	private final List<Binding> selectBindings;
+	private final CriteriaQuery<Long> countQuery;
+	private final List<Binding> countBindings;
+	private final CriteriaQuery<Tuple> projectionQuery;
+	private final List<Binding> projectionBindings;
+	private final List<String> projection;
+
+	private FilterPlan(CriteriaQuery<T> selectQuery, List<Binding> selectBindings,
+	                   CriteriaQuery<Long> countQuery, List<Binding> countBindings,
+	                   CriteriaQuery<Tuple> projectionQuery, List<Binding> projectionBindings,
+	                   List<String> projection) {
+		this.selectQuery = selectQuery;
+		this.selectBindings = selectBindings;
+		this.countQuery = countQuery;
+		this.countBindings = countBindings;
+		this.projectionQuery = projectionQuery;
+		this.projectionBindings = projectionBindings;
+		this.projection = projection;
+	}
+
+	/**
+	 * Compile a filter. Only the shape of the filter is used, not its values.
+	 *
+	 * @param entityManager    the entity manager.
+	 * @param domainClass      the domain class to query.
+	 * @param filter           the filter to compile.
+	 * @param globalAttributes the attributes included in global searches.
+	 * @param sort             the sort order, including the id tie-breaker.
+	 * @param seekKeys         the cursor keys for keyset pagination, or {@code null}.
+	 * @return the compiled plan.
+	 */
+	static <T> FilterPlan<T> compile(EntityManager entityManager, Class<T> domainClass, UIFilter filter,
+	                                 List<String> globalAttributes, Sort sort, List<Object> seekKeys) {
+		CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+
+		ParameterBinder selectBinder = new ParameterBinder();
+		FilterSpecification<T> selectSpecification = new FilterSpecification<T>(filter, selectBinder)
+				.setGlobalAttributes(globalAttributes);
+		if (seekKeys != null) {
+			selectSpecification.setSeek(sort, seekKeys);
+		}
+		CriteriaQuery<T> selectQuery = cb.createQuery(domainClass);
+		Root<T> selectRoot = selectQuery.from(domainClass);
+		Predicate selectPredicate = selectSpecification.toPredicate(selectRoot, selectQuery, cb);
+		if (selectPredicate != null) {
+			selectQuery.where(selectPredicate);
+		}
+		selectQuery.orderBy(QueryUtils.toOrders(sort, selectRoot, cb));
+
+		// The count ignores the cursor.
+		ParameterBinder countBinder = new ParameterBinder();
+		FilterSpecification<T> countSpecification = new FilterSpecification<T>(filter, countBinder)
+				.setGlobalAttributes(globalAttributes);
+		CriteriaQuery<Long> countQuery = cb.createQuery(Long.class);
+		Root<T> countRoot = countQuery.from(domainClass);
+		countQuery.select(cb.count(countRoot));
+		Predicate countPredicate = countSpecification.toPredicate(countRoot, countQuery, cb);
+		if (countPredicate != null) {
+			countQuery.where(countPredicate);
+		}
+
+		// Project the requested fields, and the sort keys needed for the cursor.
+		CriteriaQuery<Tuple> projectionQuery = null;
+		List<Binding> projectionBindings = null;
+		List<String> projection = null;
+		if (filter.getFields() != null && !filter.getFields().isEmpty()) {
+			Set<String> fields = new LinkedHashSet<>(filter.getFields());
+			sort.forEach(order -> fields.add(order.getProperty()));
+			projection = List.copyOf(fields);
+
+			ParameterBinder projectionBinder = new ParameterBinder();
+			FilterSpecification<T> projectionSpecification = new FilterSpecification<T>(filter, projectionBinder)
+					.setGlobalAttributes(globalAttributes);
+			if (seekKeys != null) {
+				projectionSpecification.setSeek(sort, seekKeys);
+			}
+			projectionQuery = cb.createTupleQuery();
+			Root<T> projectionRoot = projectionQuery.from(domainClass);
+			FilterAttributes attributes = FilterAttributes.of(projectionRoot.getModel());
+			projectionQuery.multiselect(projection.stream()
+					.<Selection<?>>map(field -> attributes.get(field).resolve(projectionRoot))
+					.toList());
+			Predicate projectionPredicate = projectionSpecification.toPredicate(projectionRoot, projectionQuery, cb);
+			if (projectionPredicate != null) {
+				projectionQuery.where(projectionPredicate);
+			}
+			projectionQuery.orderBy(QueryUtils.toOrders(sort, projectionRoot, cb));
+			projectionBindings = projectionBinder.bindings;
+		}
+
+		return new FilterPlan<>(selectQuery, selectBinder.bindings, countQuery, countBinder.bindings,
+				projectionQuery, projectionBindings, projection);
+	}
+
+	/**
+	 * Create the query for the matching rows, bound to the values of a filter.
+	 *
+	 * @param entityManager the entity manager.
+	 * @param filter        a filter of the plan's shape.
+	 * @param seekKeys      the cursor keys for keyset pagination, or {@code null}.
+	 * @return the bound query.
+	 */
+	TypedQuery<T> select(EntityManager entityManager, UIFilter filter, List<Object> seekKeys) {
+		return bind(entityManager.createQuery(selectQuery), selectBindings, filter, seekKeys);
+	}
+
+	/**
+	 * Create the projection query for the matching rows, bound to the values of a filter.
+	 *
+	 * @param entityManager the entity manager.
+	 * @param filter        a filter of the plan's shape, requesting fields.
+	 * @param seekKeys      the cursor keys for keyset pagination, or {@code null}.
+	 * @return the bound query.
+	 */
+	TypedQuery<Tuple> project(EntityManager entityManager, UIFilter filter, List<Object> seekKeys) {
+		return bind(entityManager.createQuery(projectionQuery), projectionBindings, filter, seekKeys);
+	}
+
+	/**
+	 * Convert a row of the projection query to a map of attribute paths to values.
+	 *
+	 * @param tuple a row of the projection query.
+	 * @return the values, in projection order.
+	 */
+	Map<String, Object> toMap(Tuple tuple) {
+		Map<String, Object> row = new LinkedHashMap<>();
+		for (int i = 0; i < projection.size(); i++) {
+			row.put(projection.get(i), tuple.get(i));
+		}
+		return row;
+	}
+
+	/**
+	 * Create the query counting the matching rows, bound to the values of a filter.
+	 *
+	 * @param entityManager the entity manager.
+	 * @param filter        a filter of the plan's shape.
+	 * @return the bound query.
+	 */
+	TypedQuery<Long> count(EntityManager entityManager, UIFilter filter) {
+		return bind(entityManager.createQuery(countQuery), countBindings, filter, null);
+	}
+
+	private static <Q extends TypedQuery<?>> Q bind(Q query, List<Binding> bindings, UIFilter filter, List<Object> seekKeys) {
+		for (Binding binding : bindings) {
+			Object value = binding.locator().locate(filter, seekKeys);
+			query.setParameter(binding.name(), binding.type() == null ? value : FilterBinder.convert(value, binding.type()));
+		}
+		return query;
+	}
+
+	/**
+	 * A named parameter and the location of its value in a filter.
+	 */
+	private record Binding(String name, Class<?> type, ValueLocator locator) {
+	}
+
+	/**
+	 * Renders the filter values as named parameters, recording where each value is found.
+	 */
+	private static class ParameterBinder implements FilterBinder {
+
+		private final List<Binding> bindings = new ArrayList<>();
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public <V> Expression<V> value(CriteriaBuilder cb, Class<V> type, ValueLocator locator) {
+			String name = "p" + bindings.size();
+			bindings.add(new Binding(name, type, locator));
+			return cb.parameter((Class<V>) ClassUtils.resolvePrimitiveIfNecessary(type), name);
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public Predicate in(CriteriaBuilder cb, Expression<?> expression, ValueLocator locator) {
+			String name = "p" + bindings.size();
+			bindings.add(new Binding(name, null, locator));
+			return expression.in((Expression<Collection<?>>) (Expression<?>) cb.parameter(Collection.class, name));
+		}
+	}
+}
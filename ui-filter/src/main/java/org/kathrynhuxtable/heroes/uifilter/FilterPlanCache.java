@@ -0,0 +1,125 @@
+/*
+ * Copyright 2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.heroes.uifilter;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.data.domain.Sort;
+
+import org.kathrynhuxtable.heroes.uifilter.bean.UIFilter;
+
+/**
+ * A bounded LRU cache of compiled FilterPlans, keyed by the shape of the filter rather
+ * than its values. The shape is made up of the domain class, the sort order, the global
+ * search attributes, the field names with the match mode and operator of each of their
+ * constraints and whether its value can use a trigram index, the requested fields, and
+ * which cursor keys are null.
+ */
+class FilterPlanCache {
+
+	private final Map<List<Object>, FilterPlan<?>> plans;
+
+	private final Counter hits;
+	private final Counter misses;
+
+	/**
+	 * Construct a FilterPlanCache.
+	 *
+	 * @param maximumSize the maximum number of plans to keep.
+	 */
+	FilterPlanCache(int maximumSize) {
+		this.plans = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<List<Object>, FilterPlan<?>> eldest) {
+				return size() > maximumSize;
+			}
+		});
+		this.hits = Counter.builder("uifilter.plan.cache.requests")
+				.description("Filter plan cache lookups")
+				.tag("result", "hit")
+				.register(Metrics.globalRegistry);
+		this.misses = Counter.builder("uifilter.plan.cache.requests")
+				.description("Filter plan cache lookups")
+				.tag("result", "miss")
+				.register(Metrics.globalRegistry);
+		Gauge.builder("uifilter.plan.cache.size", plans, Map::size)
+				.description("Number of cached filter plans")
+				.register(Metrics.globalRegistry);
+	}
+
+	/**
+	 * Find the plan for the shape of a filter, compiling it if not yet cached.
+	 *
+	 * @param domainClass      the domain class to query.
+	 * @param filter           the filter.
+	 * @param globalAttributes the attributes included in global searches.
+	 * @param sort             the sort order, including the id tie-breaker.
+	 * @param seekKeys         the cursor keys for keyset pagination, or {@code null}.
+	 * @param compiler         compiles the plan on a miss.
+	 * @return the plan.
+	 */
+	@SuppressWarnings("unchecked")
+	<T> FilterPlan<T> get(Class<T> domainClass, UIFilter filter, List<String> globalAttributes, Sort sort,
+	                      List<Object> seekKeys, Supplier<FilterPlan<T>> compiler) {
+		List<Object> shape = shape(domainClass, filter, globalAttributes, sort, seekKeys);
+		FilterPlan<T> plan = (FilterPlan<T>) plans.get(shape);
+		if (plan != null) {
+			hits.increment();
+		} else {
+			// Compile outside the lock. Concurrent misses on one shape just compile it twice.
+			misses.increment();
+			plan = compiler.get();
+			plans.put(shape, plan);
+		}
+		return plan;
+	}
+
+	long getHitCount() {
+		return (long) hits.count();
+	}
+
+	long getMissCount() {
+		return (long) misses.count();
+	}
+
+	int size() {
+		return plans.size();
+	}
+
+	private static List<Object> shape(Class<?> domainClass, UIFilter filter, List<String> globalAttributes, Sort sort,
+	                                  List<Object> seekKeys) {
+		List<Object> fields = new ArrayList<>();
+		if (filter.getFilters() != null) {
+			filter.getFilters().forEach((field, constraints) -> {
+				fields.add(field);
+				fields.add(constraints.stream()
+						.map(data -> Arrays.asList(data.getMatchMode(), data.getOperator(),
+								Trigrams.indexable(data.getValue())))
+						.toList());
+			});
+		}
+
+		List<String> projection = filter.getFields() == null ? List.of() : List.copyOf(filter.getFields());
+		List<Boolean> nullKeys = seekKeys == null ? null : seekKeys.stream().map(Objects::isNull).toList();
+
+		return Arrays.asList(domainClass, UIFilterCursor.signature(sort), filter.getGlobalFieldName(),
+				List.copyOf(globalAttributes), fields, projection, nullKeys);
+	}
+}
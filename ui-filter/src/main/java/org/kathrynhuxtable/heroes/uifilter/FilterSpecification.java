@@ -17,12 +17,16 @@ package org.kathrynhuxtable.heroes.uifilter;
 
 import java.io.Serial;
 import java.util.*;
+import java.util.function.UnaryOperator;
 
 import jakarta.persistence.criteria.*;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Order;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.lang.NonNull;
 
+import org.kathrynhuxtable.heroes.uifilter.FilterBinder.ValueLocator;
 import org.kathrynhuxtable.heroes.uifilter.bean.UIFilter;
 import org.kathrynhuxtable.heroes.uifilter.bean.UIFilterData;
 import org.kathrynhuxtable.heroes.uifilter.bean.UIFilterMatchMode;
@@ -31,6 +35,11 @@ import org.kathrynhuxtable.heroes.uifilter.bean.UIFilterOperator;
 
 /**
  * Specification class to process the UIFilter object and produce a JPA predicate.
+ * <p>
+ * Filter values are rendered as literals by default. When a FilterPlan is compiled,
+ * they are rendered as parameters instead, so that the plan can be reused for any
+ * filter of the same shape by binding that filter's values.
+ * </p>
  */
 @Slf4j
 public class FilterSpecification<T> implements Specification<T> {
@@ -46,7 +55,22 @@ public class FilterSpecification<T> implements Specification<T> {
 	/**
 	 * A Set of attributes to be included in global searches.
 	 */
-	private final Set<String> globalAttributes = new HashSet<>();
+	private final Set<String> globalAttributes = new LinkedHashSet<>();
+
+	/**
+	 * The sort order used for keyset pagination, including the id tie-breaker.
+	 */
+	private Sort seekSort;
+
+	/**
+	 * The sort key values of the last row of the previous page, in sort order.
+	 */
+	private List<Object> seekKeys;
+
+	/**
+	 * Renders the filter values as literals or parameters.
+	 */
+	private final transient FilterBinder binder;
 
 	/**
 	 * Construct a FilterSpecification, which constructs a JPA Predicate matching a UIFilter.
@@ -55,6 +79,18 @@ public class FilterSpecification<T> implements Specification<T> {
 	 */
 	public FilterSpecification(@NonNull UIFilter filter) {
 		this.filter = filter;
+		this.binder = new LiteralBinder();
+	}
+
+	/**
+	 * Construct a FilterSpecification rendering the filter values with a specific binder.
+	 *
+	 * @param filter the UIFilter from the UI, used for its shape.
+	 * @param binder the binder for the filter values.
+	 */
+	FilterSpecification(@NonNull UIFilter filter, @NonNull FilterBinder binder) {
+		this.filter = filter;
+		this.binder = binder;
 	}
 
 	public FilterSpecification<T> clearGlobalAttributes() {
@@ -77,33 +113,115 @@ public class FilterSpecification<T> implements Specification<T> {
 		return this;
 	}
 
+	/**
+	 * Restrict the predicate to the rows following a position in a sort order, for
+	 * keyset pagination.
+	 *
+	 * @param sort the sort order. The last order must be a unique tie-breaker, normally the id.
+	 * @param keys the sort key values of the last row of the previous page, in sort order.
+	 * @return this FilterSpecification.
+	 */
+	public FilterSpecification<T> setSeek(@NonNull Sort sort, @NonNull List<Object> keys) {
+		if (sort.stream().count() != keys.size()) {
+			throw new InvalidFilterException("Cursor does not match the requested sort order");
+		}
+		this.seekSort = sort;
+		this.seekKeys = keys;
+		return this;
+	}
+
+	public boolean hasSeek() {
+		return seekKeys != null;
+	}
+
 	@Override
 	public Predicate toPredicate(@NonNull Root<T> root, @NonNull CriteriaQuery<?> cq, @NonNull CriteriaBuilder cb) {
-		if (filter.getFilters() == null) {
-			return null;
-		}
+		return toPredicate(root, (CommonAbstractCriteria) cq, cb);
+	}
 
-		Set<Root<?>> queryRoots = cq.getRoots();
+	/**
+	 * Build the predicate for any criteria, including a bulk update or delete.
+	 *
+	 * @param root the root of the criteria.
+	 * @param cq   the criteria, used to build subqueries.
+	 * @param cb   the criteria builder.
+	 * @return the predicate, or {@code null} if the filter matches every row.
+	 */
+	public Predicate toPredicate(@NonNull Root<T> root, @NonNull CommonAbstractCriteria cq, @NonNull CriteriaBuilder cb) {
+		List<Predicate> outer = new ArrayList<>();
+		FilterAttributes attributes = FilterAttributes.of(root.getModel());
 
-		List<Predicate> outer = filter.getFilters().entrySet().stream()
-				.map(entry ->
-						buildFieldPredicate(queryRoots, cb, filter.getGlobalFieldName(), entry.getKey(), entry.getValue()))
-				.filter(Objects::nonNull)
-				.toList();
+		if (filter.getFilters() != null) {
+			filter.getFilters().entrySet().stream()
+					.map(entry ->
+							buildFieldPredicate(root, cq, attributes, cb, filter.getGlobalFieldName(), entry.getKey(), entry.getValue()))
+					.filter(Objects::nonNull)
+					.forEach(outer::add);
+		}
+
+		if (seekKeys != null) {
+			outer.add(buildSeekPredicate(root, attributes, cb));
+		}
 
 		return outer.isEmpty() ? null : cb.and(outer.toArray(new Predicate[0]));
 	}
 
-	private Predicate buildFieldPredicate(Set<Root<?>> queryRoots, CriteriaBuilder cb, String globalFieldName, String property,
-	                                      List<UIFilterData> filters) {
+	/**
+	 * Build the keyset predicate matching rows after the seek position. For each sort key,
+	 * a row follows the position if all previous keys are equal and this key is past the
+	 * position's value.
+	 */
+	private Predicate buildSeekPredicate(Root<T> root, FilterAttributes attributes, CriteriaBuilder cb) {
+		List<Predicate> alternatives = new ArrayList<>();
+		List<Predicate> equalities = new ArrayList<>();
+		int index = 0;
+		for (Order order : seekSort) {
+			FilterAttribute attribute = attributes.get(order.getProperty());
+			Path<Comparable> path = (Path<Comparable>) attribute.resolve(root);
+			int keyIndex = index++;
+			boolean isNull = seekKeys.get(keyIndex) == null;
+			Expression<Comparable> value = isNull ? null :
+					binder.value(cb, (Class<Comparable>) attribute.javaType(), (f, keys) -> keys.get(keyIndex));
+
+			Predicate after = buildAfterPredicate(cb, path, value, order.isAscending());
+			if (after != null) {
+				List<Predicate> terms = new ArrayList<>(equalities);
+				terms.add(after);
+				alternatives.add(cb.and(terms.toArray(new Predicate[0])));
+			}
+			equalities.add(isNull ? cb.isNull(path) : cb.equal(path, value));
+		}
+		return cb.or(alternatives.toArray(new Predicate[0]));
+	}
+
+	/**
+	 * Build the predicate for values past the seek value of a single key. Derby sorts
+	 * nulls higher than any other value, so they follow all values in ascending order
+	 * and precede them in descending order.
+	 */
+	private <FT extends Comparable<FT>> Predicate buildAfterPredicate(CriteriaBuilder cb, Expression<FT> fieldExpression,
+	                                                                  Expression<FT> value, boolean ascending) {
+		if (ascending) {
+			return value == null ? null : cb.or(cb.greaterThan(fieldExpression, value), cb.isNull(fieldExpression));
+		} else {
+			return value == null ? cb.isNotNull(fieldExpression) : cb.lessThan(fieldExpression, value);
+		}
+	}
+
+	private Predicate buildFieldPredicate(Root<T> root, CommonAbstractCriteria cq, FilterAttributes attributes, CriteriaBuilder cb,
+	                                      String globalFieldName, String property, List<UIFilterData> filters) {
 		List<Predicate> inner = new ArrayList<>();
-		for (UIFilterData filterData : filters) {
+		for (int i = 0; i < filters.size(); i++) {
+			int dataIndex = i;
+			ValueLocator locator = (f, keys) -> f.getFilters().get(property).get(dataIndex).getValue();
 			if (property.equals(globalFieldName)) {
 				if (!globalAttributes.isEmpty()) {
-					inner.add(buildGlobalPredicate(queryRoots, cb, filterData));
+					Predicate global = buildGlobalPredicate(root, attributes, cb, filters.get(i), locator);
+					inner.add(narrowByTrigrams(root, cq, attributes, cb, globalAttributes, filters.get(i), locator, global));
 				}
 			} else {
-				inner.add(buildSimplePredicate(queryRoots, cb, property, filterData));
+				Predicate simple = buildSimplePredicate(root, cb, attributes.get(property), filters.get(i), locator);
+				inner.add(narrowByTrigrams(root, cq, attributes, cb, List.of(property), filters.get(i), locator, simple));
 			}
 		}
 
@@ -123,103 +241,164 @@ public class FilterSpecification<T> implements Specification<T> {
 		}
 	}
 
-	private Predicate buildGlobalPredicate(Set<Root<?>> queryRoots, CriteriaBuilder cb, UIFilterData filterData) {
+	/**
+	 * Narrow a contains match to the candidate rows found in the trigram index, if the
+	 * attributes are indexed and the value has trigrams. A candidate has every trigram of
+	 * the value in one of the attributes, and the exact predicate is still applied to it.
+	 */
+	private Predicate narrowByTrigrams(Root<T> root, CommonAbstractCriteria cq, FilterAttributes attributes,
+	                                   CriteriaBuilder cb, Collection<String> paths, UIFilterData filterData,
+	                                   ValueLocator locator, Predicate predicate) {
+		UIFilterMatchMode matchMode = filterData.getMatchMode();
+		if ((matchMode != null && matchMode != UIFilterMatchMode.contains)
+				|| !attributes.isTrigramIndexed(paths)
+				|| !Trigrams.indexable(filterData.getValue())) {
+			return predicate;
+		}
+
+		Subquery<Object> candidates = cq.subquery(Object.class);
+		Root<?> entry = candidates.from(attributes.getTrigramIndex());
+		candidates.select(entry.get("entityId"))
+				.where(entry.get("attribute").in(paths),
+						binder.in(cb, entry.get("trigram"), locator.andThen(v -> Trigrams.of((String) v))))
+				.groupBy(entry.get("entityId"), entry.get("attribute"))
+				.having(cb.equal(cb.count(entry),
+						binder.value(cb, Long.class, locator.andThen(v -> (long) Trigrams.of((String) v).size()))));
+		return cb.and(root.get(attributes.getIdAttribute()).in(candidates), predicate);
+	}
+
+	private Predicate buildGlobalPredicate(Root<T> root, FilterAttributes attributes, CriteriaBuilder cb,
+	                                       UIFilterData filterData, ValueLocator locator) {
 		List<Predicate> globals = globalAttributes.stream()
-				.map(attr -> buildSimplePredicate(queryRoots, cb, attr, filterData))
+				.map(attr -> buildSimplePredicate(root, cb, attributes.get(attr), filterData, locator))
 				.toList();
 		return cb.or(globals.toArray(new Predicate[0]));
 	}
 
-	private Predicate buildSimplePredicate(Set<Root<?>> queryRoots, CriteriaBuilder cb,
-	                                       String attributeName, UIFilterData filterData) {
-		Path<?> path = getFieldPath(queryRoots, attributeName);
-		Class<?> javaType = path.getJavaType();
+	private Predicate buildSimplePredicate(Root<T> root, CriteriaBuilder cb,
+	                                       FilterAttribute attribute, UIFilterData filterData, ValueLocator locator) {
+		Path<?> path = attribute.resolve(root);
+		Class<?> javaType = attribute.javaType();
 
 		UIFilterMatchMode matchMode = filterData.getMatchMode();
 		if (matchMode == null) {
-			matchMode = javaType == String.class ? UIFilterMatchMode.contains : UIFilterMatchMode.equals;
+			matchMode = attribute.defaultMatchMode();
+		} else if (!attribute.matchModes().contains(matchMode)) {
+			throw new InvalidFilterException("Match mode " + matchMode + " is not supported for " + attribute.path());
 		}
 
-		if (javaType == String.class) {
+		if (javaType == String.class && attribute.searchKey() != null) {
+			// The search key is already normalized, so its index can be used.
 			return buildStringPredicate(
 					cb,
 					matchMode,
-					(Path<String>) path,
-					filterData.getValue());
+					(Path<String>) attribute.searchKey().resolve(root),
+					locator,
+					attribute::normalize,
+					locator.andThen(v -> ((Collection<?>) v).stream().map(e -> attribute.normalize((String) e)).toList()));
+		} else if (javaType == String.class) {
+			// The values of an in match are compared with the lower case column as given.
+			return buildStringPredicate(
+					cb,
+					matchMode,
+					cb.lower((Path<String>) path),
+					locator,
+					attribute::normalize,
+					locator);
 		} else if (Comparable.class.isAssignableFrom(javaType)) {
 			return getComparablePredicate(
 					cb,
 					matchMode,
 					(Path<Comparable>) path,
-					filterData.getValue());
+					locator);
 		} else {
 			return getObjectPredicate(
 					cb,
 					matchMode,
 					path,
-					filterData.getValue());
+					locator);
 		}
 	}
 
+	/**
+	 * Build a string predicate on a normalized field expression, normalizing the filter
+	 * values in the same way.
+	 */
 	private Predicate buildStringPredicate(CriteriaBuilder cb, UIFilterMatchMode matchMode,
-	                                       Expression<String> fieldExpression, Object value) {
+	                                       Expression<String> field, ValueLocator locator,
+	                                       UnaryOperator<String> normalizer, ValueLocator inLocator) {
 		return switch (matchMode) {
 			case between -> cb.between(
-					cb.lower(fieldExpression),
-					((List<String>) value).get(0).toLowerCase(),
-					((List<String>) value).get(1).toLowerCase());
-			case contains -> cb.like(cb.lower(fieldExpression), "%" + ((String) value).toLowerCase() + "%");
-			case endsWith -> cb.like(cb.lower(fieldExpression), "%" + ((String) value).toLowerCase());
-			case equals -> cb.equal(cb.lower(fieldExpression), ((String) value).toLowerCase());
-			case gt -> cb.greaterThan(cb.lower(fieldExpression), ((String) value).toLowerCase());
-			case gte -> cb.greaterThanOrEqualTo(cb.lower(fieldExpression), ((String) value).toLowerCase());
-			case in -> cb.lower(fieldExpression).in((List<?>) value);
-			case lt -> cb.lessThan(cb.lower(fieldExpression), ((String) value).toLowerCase());
-			case lte -> cb.lessThanOrEqualTo(cb.lower(fieldExpression), ((String) value).toLowerCase());
-			case notContains -> cb.notLike(cb.lower(fieldExpression), "%" + ((String) value).toLowerCase() + "%");
-			case notEquals -> cb.notEqual(cb.lower(fieldExpression), ((String) value).toLowerCase());
-			case startsWith -> cb.like(cb.lower(fieldExpression), ((String) value).toLowerCase() + "%");
+					field,
+					normalizedValue(cb, locator.andThen(v -> ((List<String>) v).get(0)), normalizer),
+					normalizedValue(cb, locator.andThen(v -> ((List<String>) v).get(1)), normalizer));
+			case contains -> cb.like(field, normalizedValue(cb, locator, normalizer, "%", "%"));
+			case endsWith -> cb.like(field, normalizedValue(cb, locator, normalizer, "%", ""));
+			case equals -> cb.equal(field, normalizedValue(cb, locator, normalizer));
+			case gt -> cb.greaterThan(field, normalizedValue(cb, locator, normalizer));
+			case gte -> cb.greaterThanOrEqualTo(field, normalizedValue(cb, locator, normalizer));
+			case in -> binder.in(cb, field, inLocator);
+			case lt -> cb.lessThan(field, normalizedValue(cb, locator, normalizer));
+			case lte -> cb.lessThanOrEqualTo(field, normalizedValue(cb, locator, normalizer));
+			case notContains -> cb.notLike(field, normalizedValue(cb, locator, normalizer, "%", "%"));
+			case notEquals -> cb.notEqual(field, normalizedValue(cb, locator, normalizer));
+			case startsWith -> cb.like(field, normalizedValue(cb, locator, normalizer, "", "%"));
 			default -> throw new RuntimeException("Invalid matchmode: " + matchMode);
 		};
 	}
 
+	private Expression<String> normalizedValue(CriteriaBuilder cb, ValueLocator locator, UnaryOperator<String> normalizer) {
+		return normalizedValue(cb, locator, normalizer, "", "");
+	}
+
+	private Expression<String> normalizedValue(CriteriaBuilder cb, ValueLocator locator, UnaryOperator<String> normalizer,
+	                                           String prefix, String suffix) {
+		return binder.value(cb, String.class, locator.andThen(v -> prefix + normalizer.apply((String) v) + suffix));
+	}
+
 	private <FT extends Comparable<FT>> Predicate getComparablePredicate(CriteriaBuilder cb, UIFilterMatchMode matchMode,
-	                                                                     Expression<FT> fieldExpression, Object value) {
+	                                                                     Expression<FT> fieldExpression, ValueLocator locator) {
+		Class<FT> javaType = (Class<FT>) fieldExpression.getJavaType();
 		return switch (matchMode) {
-			case between -> cb.between(fieldExpression, ((List<FT>) value).get(0), ((List<FT>) value).get(1));
-			case equals -> cb.equal(fieldExpression, value);
-			case gt -> cb.greaterThan(fieldExpression, (FT) value);
-			case gte -> cb.greaterThanOrEqualTo(fieldExpression, (FT) value);
-			case in -> fieldExpression.in((List<FT>) value);
-			case lt -> cb.lessThan(fieldExpression, (FT) value);
-			case lte -> cb.lessThanOrEqualTo(fieldExpression, (FT) value);
-			case notEquals -> cb.notEqual(fieldExpression, value);
+			case between -> cb.between(
+					fieldExpression,
+					binder.value(cb, javaType, locator.andThen(v -> ((List<?>) v).get(0))),
+					binder.value(cb, javaType, locator.andThen(v -> ((List<?>) v).get(1))));
+			case equals -> cb.equal(fieldExpression, binder.value(cb, javaType, locator));
+			case gt -> cb.greaterThan(fieldExpression, binder.value(cb, javaType, locator));
+			case gte -> cb.greaterThanOrEqualTo(fieldExpression, binder.value(cb, javaType, locator));
+			case in -> binder.in(cb, fieldExpression, locator);
+			case lt -> cb.lessThan(fieldExpression, binder.value(cb, javaType, locator));
+			case lte -> cb.lessThanOrEqualTo(fieldExpression, binder.value(cb, javaType, locator));
+			case notEquals -> cb.notEqual(fieldExpression, binder.value(cb, javaType, locator));
 			default -> throw new RuntimeException("Invalid matchmode: " + matchMode);
 		};
 	}
 
 	private Predicate getObjectPredicate(CriteriaBuilder cb, UIFilterMatchMode matchMode,
-	                                     Expression<?> fieldExpression, Object value) {
+	                                     Expression<?> fieldExpression, ValueLocator locator) {
 		return switch (matchMode) {
-			case equals -> cb.equal(fieldExpression, value);
-			case in -> fieldExpression.in((List<?>) value);
-			case notEquals -> cb.notEqual(fieldExpression, value);
+			case equals -> cb.equal(fieldExpression, binder.value(cb, fieldExpression.getJavaType(), locator));
+			case in -> binder.in(cb, fieldExpression, locator);
+			case notEquals -> cb.notEqual(fieldExpression, binder.value(cb, fieldExpression.getJavaType(), locator));
 			default -> throw new RuntimeException("Invalid matchmode: " + matchMode);
 		};
 	}
 
-	private Path<?> getFieldPath(Set<Root<?>> queryRoots, String fieldName) {
-		// Need to handle joins.
-		return queryRoots.stream()
-				.map(root -> {
-					try {
-						return root.get(fieldName);
-					} catch (IllegalArgumentException e) {
-						return null;
-					}
-				})
-				.filter(Objects::nonNull)
-				.findFirst()
-				.orElse(null);
+	/**
+	 * Renders the filter values as literals.
+	 */
+	private class LiteralBinder implements FilterBinder {
+
+		@Override
+		public <V> Expression<V> value(CriteriaBuilder cb, Class<V> type, ValueLocator locator) {
+			V value = FilterBinder.convert(locator.locate(filter, seekKeys), type);
+			return value == null ? cb.nullLiteral(type) : cb.literal(value);
+		}
+
+		@Override
+		public Predicate in(CriteriaBuilder cb, Expression<?> expression, ValueLocator locator) {
+			return expression.in((Collection<?>) locator.locate(filter, seekKeys));
+		}
 	}
 }
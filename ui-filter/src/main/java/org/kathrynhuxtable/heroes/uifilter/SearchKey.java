@@ -0,0 +1,41 @@
+/*
+ * Copyright 2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.heroes.uifilter;
+
+import java.lang.annotation.*;
+
+/**
+ * Marks an entity attribute holding the normalized form of another string attribute of
+ * the same entity, as produced by {@link SearchKeys#normalize}. Filters and sorts on the
+ * other attribute then use this one, so that a plain index on its column serves
+ * case- and accent-insensitive matches and sorts.
+ * <p>
+ * The entity must keep the attribute up to date, usually in a {@code @PrePersist} and
+ * {@code @PreUpdate} callback.
+ * </p>
+ */
+@Documented
+@Target(ElementType.FIELD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface SearchKey {
+
+	/**
+	 * The attribute this attribute normalizes.
+	 *
+	 * @return the name of the source attribute.
+	 */
+	String value();
+}
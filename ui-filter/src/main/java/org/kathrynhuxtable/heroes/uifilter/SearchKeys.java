@@ -0,0 +1,46 @@
+/*
+ * Copyright 2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.heroes.uifilter;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Normalizes strings for case- and accent-insensitive matching and sorting.
+ */
+public final class SearchKeys {
+
+	private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
+	private SearchKeys() {
+	}
+
+	/**
+	 * Normalize a string by removing accents and converting to lower case.
+	 *
+	 * @param value the string, or {@code null}.
+	 * @return the normalized string, or {@code null}.
+	 */
+	public static String normalize(String value) {
+		if (value == null) {
+			return null;
+		}
+		// Decompose accented characters so that the accents can be removed.
+		String decomposed = Normalizer.normalize(value, Normalizer.Form.NFD);
+		return COMBINING_MARKS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+	}
+}
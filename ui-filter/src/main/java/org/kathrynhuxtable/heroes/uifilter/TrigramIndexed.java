@@ -0,0 +1,49 @@
+/*
+ * Copyright 2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.heroes.uifilter;
+
+import java.lang.annotation.*;
+
+/**
+ * Marks an entity whose string attributes have a trigram index, so that {@code contains}
+ * and global filters on them can be narrowed to candidate rows through the index before
+ * the exact match is applied.
+ * <p>
+ * The index entity must have the attributes {@code entityId}, {@code attribute} and
+ * {@code trigram}, and hold one row for each distinct trigram of each indexed attribute
+ * value, as produced by {@link Trigrams#of}. Its key should start with the attribute and
+ * trigram, so that lookups are index scans.
+ * </p>
+ */
+@Documented
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface TrigramIndexed {
+
+	/**
+	 * The index entity.
+	 *
+	 * @return the class of the index entity.
+	 */
+	Class<?> value();
+
+	/**
+	 * The indexed attributes.
+	 *
+	 * @return the names of the indexed attributes.
+	 */
+	String[] attributes();
+}
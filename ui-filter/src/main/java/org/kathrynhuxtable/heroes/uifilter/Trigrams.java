@@ -0,0 +1,60 @@
+/*
+ * Copyright 2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.heroes.uifilter;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Splits strings into trigrams for a trigram index. Values are normalized first, as
+ * filter values are, so a value contains a term only if it has all of the term's
+ * trigrams.
+ */
+public final class Trigrams {
+
+	private Trigrams() {
+	}
+
+	/**
+	 * Find the distinct trigrams of a value.
+	 *
+	 * @param value the value, or {@code null}.
+	 * @return the trigrams, in order of first appearance, or an empty set if the value is
+	 * shorter than three characters.
+	 */
+	public static Set<String> of(String value) {
+		String normalized = value == null ? "" : SearchKeys.normalize(value);
+		if (normalized.length() < 3) {
+			return Collections.emptySet();
+		}
+		Set<String> trigrams = new LinkedHashSet<>();
+		for (int i = 0; i + 3 <= normalized.length(); i++) {
+			trigrams.add(normalized.substring(i, i + 3));
+		}
+		return trigrams;
+	}
+
+	/**
+	 * Whether a filter value can be looked up in a trigram index.
+	 *
+	 * @param value the filter value.
+	 * @return true if the value is a string with at least one trigram.
+	 */
+	public static boolean indexable(Object value) {
+		return value instanceof String s && !of(s).isEmpty();
+	}
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.heroes.uifilter;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.lang.NonNull;
+
+/**
+ * Encodes and decodes the opaque continuation tokens used for keyset pagination.
+ * <p>
+ * A token holds the values of the sort keys of the last row of a page, the last key
+ * always being the entity id, along with a hash of the sort order it was built for,
+ * so that a token cannot be replayed against a different sort.
+ * </p>
+ */
+public final class UIFilterCursor {
+
+	private static final byte VERSION = 1;
+
+	private static final byte NULL = 0;
+	private static final byte STRING = 1;
+	private static final byte INTEGER = 2;
+	private static final byte LONG = 3;
+	private static final byte SHORT = 4;
+	private static final byte DOUBLE = 5;
+	private static final byte FLOAT = 6;
+	private static final byte BOOLEAN = 7;
+	private static final byte DECIMAL = 8;
+	private static final byte DATE = 9;
+	private static final byte TIMESTAMP = 10;
+
+	private UIFilterCursor() {
+	}
+
+	/**
+	 * Build the signature of a sort order. A cursor is only valid for the sort
+	 * order it was generated for.
+	 *
+	 * @param sort the sort order, including the id tie-breaker.
+	 * @return the signature.
+	 */
+	public static String signature(@NonNull Sort sort) {
+		return sort.stream()
+				.map(order -> order.getProperty() + ":" + order.getDirection())
+				.collect(Collectors.joining(","));
+	}
+
+	/**
+	 * Encode the sort key values of a row as a continuation token.
+	 *
+	 * @param signature the signature of the sort order.
+	 * @param keys      the sort key values, in sort order.
+	 * @return the opaque token.
+	 */
+	public static String encode(@NonNull String signature, @NonNull List<?> keys) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeByte(VERSION);
+			out.writeInt(signature.hashCode());
+			out.writeShort(keys.size());
+			for (Object key : keys) {
+				writeValue(out, key);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+	}
+
+	/**
+	 * Decode a continuation token.
+	 *
+	 * @param signature the signature of the sort order of the current request.
+	 * @param token     the opaque token.
+	 * @return the sort key values, in sort order.
+	 * @throws InvalidFilterException if the token is malformed or was built for a different sort order.
+	 */
+	public static List<Object> decode(@NonNull String signature, @NonNull String token) {
+		byte[] bytes;
+		try {
+			bytes = Base64.getUrlDecoder().decode(token);
+		} catch (IllegalArgumentException e) {
+			throw new InvalidFilterException("Invalid cursor: " + token, e);
+		}
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+			if (in.readByte() != VERSION || in.readInt() != signature.hashCode()) {
+				throw new InvalidFilterException("Cursor does not match the requested sort order");
+			}
+			int count = in.readShort();
+			List<Object> keys = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				keys.add(readValue(in));
+			}
+			return keys;
+		} catch (IOException e) {
+			throw new InvalidFilterException("Invalid cursor: " + token, e);
+		}
+	}
+
+	private static void writeValue(DataOutputStream out, Object value) throws IOException {
+		if (value == null) {
+			out.writeByte(NULL);
+		} else if (value instanceof String s) {
+			out.writeByte(STRING);
+			out.writeUTF(s);
+		} else if (value instanceof Integer i) {
+			out.writeByte(INTEGER);
+			out.writeInt(i);
+		} else if (value instanceof Long l) {
+			out.writeByte(LONG);
+			out.writeLong(l);
+		} else if (value instanceof Short s) {
+			out.writeByte(SHORT);
+			out.writeShort(s);
+		} else if (value instanceof Double d) {
+			out.writeByte(DOUBLE);
+			out.writeDouble(d);
+		} else if (value instanceof Float f) {
+			out.writeByte(FLOAT);
+			out.writeFloat(f);
+		} else if (value instanceof Boolean b) {
+			out.writeByte(BOOLEAN);
+			out.writeBoolean(b);
+		} else if (value instanceof BigDecimal d) {
+			out.writeByte(DECIMAL);
+			out.writeUTF(d.toString());
+		} else if (value instanceof Timestamp t) {
+			// Keep the nanoseconds, or rows within the same millisecond would repeat.
+			out.writeByte(TIMESTAMP);
+			out.writeLong(t.getTime());
+			out.writeInt(t.getNanos());
+		} else if (value instanceof Date d) {
+			out.writeByte(DATE);
+			out.writeLong(d.getTime());
+		} else {
+			throw new IllegalArgumentException("Unsupported cursor key type: " + value.getClass().getName());
+		}
+	}
+
+	private static Object readValue(DataInputStream in) throws IOException {
+		byte type = in.readByte();
+		return switch (type) {
+			case NULL -> null;
+			case STRING -> in.readUTF();
+			case INTEGER -> in.readInt();
+			case LONG -> in.readLong();
+			case SHORT -> in.readShort();
+			case DOUBLE -> in.readDouble();
+			case FLOAT -> in.readFloat();
+			case BOOLEAN -> in.readBoolean();
+			case DECIMAL -> new BigDecimal(in.readUTF());
+			case DATE -> new Date(in.readLong());
+			case TIMESTAMP -> {
+				Timestamp timestamp = new Timestamp(in.readLong());
+				timestamp.setNanos(in.readInt());
+				yield timestamp;
+			}
+			default -> throw new IOException("Unknown cursor key type: " + type);
+		};
+	}
+}
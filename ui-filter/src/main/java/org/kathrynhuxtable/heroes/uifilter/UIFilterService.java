@@ -16,12 +16,15 @@
 package org.kathrynhuxtable.heroes.uifilter;
 
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.lang.NonNull;
 
 import org.kathrynhuxtable.heroes.uifilter.bean.UIFilter;
+import org.kathrynhuxtable.heroes.uifilter.bean.UIFilterPage;
 
 /**
  * Provide common methods for the UIFilterDescriptor annotation.
@@ -42,6 +45,26 @@ public interface UIFilterService<T> {
 	long countByFilter(@NonNull UIFilter filter,
 	                   @NonNull JpaSpecificationExecutor<T> dao);
 
+	/**
+	 * Return the number of rows matched by filter criteria without paginating. Counts
+	 * are cached by the filter's predicates, ignoring paging and sort, until
+	 * {@link #invalidateCounts} is called for the domain class.
+	 *
+	 * @param filter      the UIFilter object.
+	 * @param domainClass the domain class to query.
+	 * @return the number of rows matched by the filter criteria.
+	 */
+	long countByFilter(@NonNull UIFilter filter,
+	                   @NonNull Class<T> domainClass);
+
+	/**
+	 * Discard the cached counts of a domain class. Must be called whenever rows of the
+	 * domain class are saved or deleted.
+	 *
+	 * @param domainClass the domain class whose rows have changed.
+	 */
+	void invalidateCounts(@NonNull Class<T> domainClass);
+
 	/**
 	 * Find by filter. Supports pagination, sorting, and filtering on values.
 	 *
@@ -54,6 +77,114 @@ public interface UIFilterService<T> {
 	                     String defaultField,
 	                     @NonNull JpaSpecificationExecutor<T> dao);
 
+	/**
+	 * Check a filter against the attributes of the domain class before it is run, so that a
+	 * bad request is rejected without touching the database.
+	 *
+	 * @param filter      the UIFilter object.
+	 * @param domainClass the domain class to be queried.
+	 * @throws InvalidFilterException if the filter refers to unknown attributes, uses an
+	 *                                unsupported match mode, or has values of the wrong form.
+	 */
+	void validate(@NonNull UIFilter filter,
+	              @NonNull Class<T> domainClass);
+
+	/**
+	 * Check a filter for an export before it is run, as {@link #validate} does, and
+	 * against the budget of an export, so that a rejection can be reported before the
+	 * export starts writing.
+	 *
+	 * @param filter      the UIFilter object.
+	 * @param domainClass the domain class to be queried.
+	 * @throws InvalidFilterException if the filter is not valid.
+	 * @throws FilterBudgetException  if the filter must scan a large table.
+	 */
+	void validateExport(@NonNull UIFilter filter,
+	                    @NonNull Class<T> domainClass);
+
+	/**
+	 * The limits on the rows, payload and time of the filter queries, so that another
+	 * implementation can bound its pages in the same way.
+	 *
+	 * @return the query budget.
+	 */
+	FilterBudget getBudget();
+
+	/**
+	 * Find a page by filter, along with the total number of matching rows. Supports
+	 * offset and keyset pagination, sorting, and filtering on values.
+	 * <p>
+	 * The entity id is always added as the last sort key, so that the order is total. If
+	 * more rows follow, the returned page holds a cursor that may be passed in the next
+	 * filter to seek directly to the following page, so deep pages cost about the same as
+	 * the first page when the sort columns are indexed.
+	 * </p>
+	 * <p>
+	 * The rows and the total are found in one transaction. The total is only counted when
+	 * the page is full, since a short page is the last page. If the filter requests a slice,
+	 * the total is never counted and the page only reports whether more rows follow.
+	 * Totals are cached as for {@link #countByFilter(UIFilter, Class)}.
+	 * </p>
+	 * <p>
+	 * The page is bounded by the {@link FilterBudget}. A filter without rows is read as a
+	 * slice of the largest page allowed, and a filter scanning a large table may be read as
+	 * a slice rather than counted.
+	 * </p>
+	 * <p>
+	 * If the filter requests facets, all the matching rows are counted into their buckets
+	 * in one more query, grouping by every facet at once. The budget bounds the number of
+	 * groups, which is the number of combinations of bucket keys that occur.
+	 * </p>
+	 *
+	 * @param filter       the UIFilter object.
+	 * @param defaultField optional default field to sort by.
+	 * @param domainClass  the domain class to query.
+	 * @return a page of matching domain records.
+	 * @throws InvalidFilterException if the filter or cursor is not valid.
+	 * @throws FilterBudgetException  if the filter exceeds the query budget.
+	 */
+	UIFilterPage<T> findPageByFilter(@NonNull UIFilter filter,
+	                                 String defaultField,
+	                                 @NonNull Class<T> domainClass);
+
+	/**
+	 * Find a page by filter, returning only the requested fields of each row. Works as
+	 * {@link #findPageByFilter}, but selects only the attributes listed in the filter's
+	 * fields, along with the id and the sort keys, without loading entities.
+	 *
+	 * @param filter       the UIFilter object, with the fields to return.
+	 * @param defaultField optional default field to sort by.
+	 * @param domainClass  the domain class to query.
+	 * @return a page of rows, each mapping attribute paths to values.
+	 * @throws InvalidFilterException if the filter or cursor is not valid, or no fields are requested.
+	 * @throws FilterBudgetException  if the filter exceeds the query budget.
+	 */
+	UIFilterPage<Map<String, Object>> findProjectionByFilter(@NonNull UIFilter filter,
+	                                                        String defaultField,
+	                                                        @NonNull Class<T> domainClass);
+
+	/**
+	 * Pass every row matched by a filter to a consumer, in sort order, ignoring
+	 * pagination. Rows are read forward through a database cursor, and the persistence
+	 * context is cleared periodically, so memory use does not depend on the number of
+	 * rows. The consumer must not hold on to the rows, which are detached as it goes.
+	 * <p>
+	 * The rows are not limited by the {@link FilterBudget}, but a filter scanning a large
+	 * table is rejected, and the query is cancelled after the export timeout.
+	 * </p>
+	 *
+	 * @param filter       the UIFilter object.
+	 * @param defaultField optional default field to sort by.
+	 * @param domainClass  the domain class to query.
+	 * @param consumer     receives each matching row.
+	 * @throws InvalidFilterException if the filter is not valid.
+	 * @throws FilterBudgetException  if the filter must scan a large table, or takes too long.
+	 */
+	void forEachByFilter(@NonNull UIFilter filter,
+	                     String defaultField,
+	                     @NonNull Class<T> domainClass,
+	                     @NonNull Consumer<? super T> consumer);
+
 	/**
 	 * Build a JPA sort.
 	 *
@@ -17,8 +17,30 @@ package org.kathrynhuxtable.heroes.uifilter;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.QueryTimeoutException;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.PropertyAccessorFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
@@ -27,17 +49,104 @@ import org.springframework.data.domain.Sort.Order;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
 
 import org.kathrynhuxtable.heroes.uifilter.bean.UIFilter;
+import org.kathrynhuxtable.heroes.uifilter.bean.UIFilterBucket;
+import org.kathrynhuxtable.heroes.uifilter.bean.UIFilterPage;
 import org.kathrynhuxtable.heroes.uifilter.bean.UIFilterSort;
 
 @Component
-public class UIFilterServiceImpl<T> implements UIFilterService<T> {
+public class UIFilterServiceImpl<T> implements UIFilterService<T>, InitializingBean {
+
+	private static final String HINT_FETCH_SIZE = "org.hibernate.fetchSize";
+	private static final String HINT_READ_ONLY = "org.hibernate.readOnly";
+	private static final String HINT_TIMEOUT = "org.hibernate.timeout";
+
+	/**
+	 * Makes Hibernate copy a criteria query each time it is executed, which the compiled
+	 * plans rely on, since they share their criteria queries between executions.
+	 */
+	public static final String COPY_TREE_PROPERTY = "hibernate.criteria.copy_tree";
+
+	/**
+	 * The attributes included in global searches.
+	 */
+	public static final List<String> GLOBAL_ATTRIBUTES = Arrays.asList("name", "power", "alterEgo");
+
+	/**
+	 * Compiled query plans, keyed by the shape of the filter.
+	 */
+	private final FilterPlanCache planCache;
+
+	/**
+	 * Filter counts, keyed by the filter's predicates and the version of the table.
+	 */
+	private final FilterCountCache countCache;
+
+	/**
+	 * The number of rows fetched at a time when streaming, and between clearing the
+	 * persistence context.
+	 */
+	private final int fetchSize;
+
+	/**
+	 * The limits on the rows, payload and time of each query.
+	 */
+	private final FilterBudget budget;
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	public UIFilterServiceImpl(@Value("${uifilter.plan-cache.maximum-size:256}") int planCacheSize,
+	                           @Value("${uifilter.count-cache.maximum-size:1024}") long countCacheSize,
+	                           @Value("${uifilter.stream.fetch-size:500}") int fetchSize,
+	                           @Value("${uifilter.budget.max-rows:1000}") int maxRows,
+	                           @Value("${uifilter.budget.max-payload:50000}") long maxPayload,
+	                           @Value("${uifilter.budget.timeout-seconds:10}") int timeoutSeconds,
+	                           @Value("${uifilter.budget.export-timeout-seconds:300}") int exportTimeoutSeconds,
+	                           @Value("${uifilter.budget.scan-rows:100000}") long scanRows,
+	                           @Value("${uifilter.budget.scan-policy:downgrade}") FilterBudget.ScanPolicy scanPolicy,
+	                           @Value("${uifilter.budget.max-facet-groups:10000}") int maxFacetGroups) {
+		this.planCache = new FilterPlanCache(planCacheSize);
+		this.countCache = new FilterCountCache(countCacheSize);
+		this.fetchSize = fetchSize;
+		this.budget = new FilterBudget(maxRows, maxPayload, timeoutSeconds, exportTimeoutSeconds, scanRows,
+				scanPolicy, maxFacetGroups);
+	}
+
+	/**
+	 * Check that the persistence unit copies criteria queries on execution, which the
+	 * plan cache needs.
+	 */
+	@Override
+	public void afterPropertiesSet() {
+		Object copyTree = entityManager.getEntityManagerFactory().getProperties().get(COPY_TREE_PROPERTY);
+		if (!"true".equals(String.valueOf(copyTree))) {
+			throw new IllegalStateException(COPY_TREE_PROPERTY + " must be true, since compiled filter plans"
+					+ " share criteria queries between executions");
+		}
+	}
 
 	@Override
 	public long countByFilter(@NonNull UIFilter filter,
 	                          @NonNull JpaSpecificationExecutor<T> dao) {
-		return dao.count(new FilterSpecification<>(filter).setGlobalAttributes(Arrays.asList("name", "power", "alterEgo")));
+		return dao.count(new FilterSpecification<T>(filter).setGlobalAttributes(GLOBAL_ATTRIBUTES));
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public long countByFilter(@NonNull UIFilter filter,
+	                          @NonNull Class<T> domainClass) {
+		FilterAttributes attributes = getAttributes(domainClass);
+		attributes.validate(filter, GLOBAL_ATTRIBUTES);
+
+		return count(domainClass, attributes, filter);
+	}
+
+	@Override
+	public void invalidateCounts(@NonNull Class<T> domainClass) {
+		countCache.invalidate(domainClass);
 	}
 
 	@Override
@@ -49,18 +158,183 @@ public class UIFilterServiceImpl<T> implements UIFilterService<T> {
 
 		// Create the filter predicate.
 		FilterSpecification<T> filterSpecification = new FilterSpecification<>(filter);
-		filterSpecification.setGlobalAttributes(Arrays.asList("name", "power", "alterEgo"));
+		filterSpecification.setGlobalAttributes(GLOBAL_ATTRIBUTES);
+
+		// Find the rows, paginating if requested. An unpaginated filter returns the first
+		// page the budget allows.
+		int rows = budget.checkRows(filter);
+		int first = filter.getRows() == null || filter.getRows() == 0 || filter.getFirst() == null ? 0 : filter.getFirst();
+		int page = first / rows;
+		Page<T> pageable = dao.findAll(filterSpecification, PageRequest.of(page, rows, sort));
+		return pageable.getContent();
+	}
 
-		// Find the rows, paginating if requested.
-		if (filter.getRows() == null || filter.getRows() == 0) {
-			return dao.findAll(filterSpecification, sort);
+	@Override
+	public void validate(@NonNull UIFilter filter,
+	                     @NonNull Class<T> domainClass) {
+		getAttributes(domainClass).validate(filter, GLOBAL_ATTRIBUTES);
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public void validateExport(@NonNull UIFilter filter,
+	                           @NonNull Class<T> domainClass) {
+		FilterAttributes attributes = getAttributes(domainClass);
+		attributes.validate(filter, GLOBAL_ATTRIBUTES);
+		budget.checkExport(attributes, filter, GLOBAL_ATTRIBUTES, () -> count(domainClass, attributes, new UIFilter()));
+	}
+
+	@Override
+	public FilterBudget getBudget() {
+		return budget;
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public UIFilterPage<T> findPageByFilter(@NonNull UIFilter filter,
+	                                        String defaultField,
+	                                        @NonNull Class<T> domainClass) {
+		return findPage(filter, defaultField, domainClass,
+				(plan, seekKeys, first, maxResults) ->
+						limit(plan.select(entityManager, filter, seekKeys), first, maxResults).getResultList(),
+				this::getSortKeys);
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public UIFilterPage<Map<String, Object>> findProjectionByFilter(@NonNull UIFilter filter,
+	                                                               String defaultField,
+	                                                               @NonNull Class<T> domainClass) {
+		if (filter.getFields() == null || filter.getFields().isEmpty()) {
+			throw new InvalidFilterException("A projection requires a list of fields");
+		}
+		return findPage(filter, defaultField, domainClass,
+				(plan, seekKeys, first, maxResults) ->
+						limit(plan.project(entityManager, filter, seekKeys), first, maxResults).getResultList().stream()
+								.map(plan::toMap)
+								.toList(),
+				(row, sort) -> sort.stream().map(order -> row.get(order.getProperty())).toList());
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public void forEachByFilter(@NonNull UIFilter filter,
+	                            String defaultField,
+	                            @NonNull Class<T> domainClass,
+	                            @NonNull Consumer<? super T> consumer) {
+		FilterAttributes attributes = getAttributes(domainClass);
+		attributes.validate(filter, GLOBAL_ATTRIBUTES);
+
+		// Use the same order as paged queries, so the plan is shared with them.
+		Sort sort = withTieBreaker(toSearchKeys(buildSort(filter, defaultField), attributes), attributes.getIdAttribute());
+		FilterPlan<T> plan = planCache.get(domainClass, filter, GLOBAL_ATTRIBUTES, sort, null,
+				() -> FilterPlan.compile(entityManager, domainClass, filter, GLOBAL_ATTRIBUTES, sort, null));
+
+		// Exports are meant to read every matching row, so they are not limited in rows.
+		// But a scan of a large table is rejected, and the query has the export timeout,
+		// so that an export cannot hold a connection indefinitely.
+		budget.checkExport(attributes, filter, GLOBAL_ATTRIBUTES, () -> count(domainClass, attributes, new UIFilter()));
+
+		// Read forward through a cursor, clearing the persistence context as we go so
+		// that memory use does not grow with the number of rows.
+		TypedQuery<T> query = plan.select(entityManager, filter, null);
+		query.setHint(HINT_FETCH_SIZE, fetchSize);
+		query.setHint(HINT_READ_ONLY, true);
+		if (budget.getExportTimeoutSeconds() > 0) {
+			query.setHint(HINT_TIMEOUT, budget.getExportTimeoutSeconds());
+		}
+		try (Stream<T> rows = query.getResultStream()) {
+			Iterator<T> iterator = rows.iterator();
+			for (int count = 1; iterator.hasNext(); count++) {
+				consumer.accept(iterator.next());
+				if (count % fetchSize == 0) {
+					entityManager.clear();
+				}
+			}
+		} catch (QueryTimeoutException e) {
+			throw budget.exportTimedOut(e);
+		}
+	}
+
+	private <R> UIFilterPage<R> findPage(UIFilter filter, String defaultField, Class<T> domainClass,
+	                                     RowReader<T, R> reader, BiFunction<R, Sort, List<Object>> sortKeys) {
+		FilterAttributes attributes = getAttributes(domainClass);
+		attributes.validate(filter, GLOBAL_ATTRIBUTES);
+
+		// Keyset pagination needs a total order, so the id is always the last sort key.
+		Sort sort = withTieBreaker(toSearchKeys(buildSort(filter, defaultField), attributes), attributes.getIdAttribute());
+		String signature = UIFilterCursor.signature(sort);
+
+		// Bound the page by the budget. An unpaginated filter gets the largest page
+		// allowed, read as a slice.
+		FilterBudget.Allowance allowance = budget.check(attributes, filter, GLOBAL_ATTRIBUTES,
+				() -> count(domainClass, attributes, new UIFilter()));
+		boolean paginate = filter.getRows() != null && filter.getRows() > 0;
+		boolean seek = filter.getCursor() != null && !filter.getCursor().isBlank();
+		boolean slice = allowance.slice();
+		int first = !paginate || filter.getFirst() == null ? 0 : filter.getFirst();
+		int rows = allowance.rows();
+
+		List<Object> seekKeys = seek ? UIFilterCursor.decode(signature, filter.getCursor()) : null;
+		if (seekKeys != null && seekKeys.size() != sort.stream().count()) {
+			throw new InvalidFilterException("Cursor does not match the requested sort order");
+		}
+
+		// Find the compiled plan for the filter's shape, seeking past the cursor if supplied.
+		FilterPlan<T> plan = planCache.get(domainClass, filter, GLOBAL_ATTRIBUTES, sort, seekKeys,
+				() -> FilterPlan.compile(entityManager, domainClass, filter, GLOBAL_ATTRIBUTES, sort, seekKeys));
+
+		// Find the rows. A slice or a keyset page reads one extra row to find whether more
+		// rows follow, since the offset of a keyset page is unknown.
+		boolean extra = slice || seek;
+		List<R> records = execute(() -> reader.read(plan, seekKeys, seek ? null : first, extra ? rows + 1 : rows));
+
+		UIFilterPage<R> page = toPage(records, rows, first, slice, seek, () -> count(domainClass, attributes, filter));
+		if (filter.getFacets() != null && !filter.getFacets().isEmpty()) {
+			page.setFacets(facets(domainClass, attributes, filter));
+		}
+
+		if (page.isMore()) {
+			page.setCursor(UIFilterCursor.encode(signature, sortKeys.apply(page.getRecords().get(rows - 1), sort)));
+		}
+		return page;
+	}
+
+	/**
+	 * Build a page from the rows read for it. A slice or a keyset page was read with one
+	 * extra row, which tells whether more rows follow and is dropped. A slice is not
+	 * counted. An offset page that is short, but not empty past the end, is the last page,
+	 * so its total is known without counting.
+	 *
+	 * @param records the rows read.
+	 * @param rows    the size of the page.
+	 * @param first   the offset of the page, which is meaningless when seeking.
+	 * @param slice   whether the page is a slice.
+	 * @param seek    whether the page was found by seeking past a cursor.
+	 * @param count   counts the matching rows.
+	 * @param <R>     the type of the rows.
+	 * @return the page, without its cursor or facets.
+	 */
+	static <R> UIFilterPage<R> toPage(List<R> records, int rows, int first, boolean slice, boolean seek,
+	                                  LongSupplier count) {
+		UIFilterPage<R> page = new UIFilterPage<>();
+		if (slice || seek) {
+			page.setMore(records.size() > rows);
+			if (page.isMore()) {
+				records = records.subList(0, rows);
+			}
+			if (!slice) {
+				page.setTotalRecords(count.getAsLong());
+			}
+		} else if (records.size() < rows && (first == 0 || !records.isEmpty())) {
+			page.setTotalRecords((long) first + records.size());
 		} else {
-			int rows = filter.getRows();
-			int first = filter.getFirst() == null ? 0 : filter.getFirst();
-			int page = first / rows;
-			Page<T> pageable = dao.findAll(filterSpecification, PageRequest.of(page, rows, sort));
-			return pageable.getContent();
+			long totalRecords = count.getAsLong();
+			page.setTotalRecords(totalRecords);
+			page.setMore(totalRecords > (long) first + rows);
 		}
+		page.setRecords(records);
+		return page;
 	}
 
 	@Override
@@ -82,4 +356,118 @@ public class UIFilterServiceImpl<T> implements UIFilterService<T> {
 			return Sort.by(orders);
 		}
 	}
+
+	/**
+	 * Sort string attributes on their search keys, where they have them, so that the sort
+	 * ignores case and accents and can use the search key's index.
+	 */
+	private Sort toSearchKeys(Sort sort, FilterAttributes attributes) {
+		return Sort.by(sort.stream()
+				.map(order -> order.withProperty(attributes.get(order.getProperty()).sortPath()))
+				.toList());
+	}
+
+	private Sort withTieBreaker(Sort sort, String idAttribute) {
+		if (sort.getOrderFor(idAttribute) != null) {
+			return sort;
+		} else {
+			return sort.and(Sort.by(Sort.Direction.ASC, idAttribute));
+		}
+	}
+
+	/**
+	 * Count the rows matched by a filter, or find the count in the cache.
+	 */
+	private long count(Class<T> domainClass, FilterAttributes attributes, UIFilter filter) {
+		return countCache.get(domainClass, attributes, filter, GLOBAL_ATTRIBUTES, () -> {
+			FilterPlan<T> plan = planCache.get(domainClass, filter, GLOBAL_ATTRIBUTES, Sort.unsorted(), null,
+					() -> FilterPlan.compile(entityManager, domainClass, filter, GLOBAL_ATTRIBUTES, Sort.unsorted(), null));
+			return execute(() -> withTimeout(plan.count(entityManager, filter)).getSingleResult());
+		});
+	}
+
+	/**
+	 * Count the rows matched by a filter into the buckets of its facets, in one query
+	 * grouping by the bucket keys of every facet. The groups are the combinations of keys
+	 * that occur, which can approach the number of matching rows, so they are bounded by
+	 * the budget.
+	 */
+	private Map<String, List<UIFilterBucket>> facets(Class<T> domainClass, FilterAttributes attributes, UIFilter filter) {
+		FilterFacets facets = new FilterFacets(attributes, filter.getFacets());
+
+		CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+		CriteriaQuery<Tuple> cq = cb.createTupleQuery();
+		Root<T> root = cq.from(domainClass);
+		List<Expression<?>> keys = facets.groupBy(cb, root);
+		List<Selection<?>> selections = new ArrayList<>(keys);
+		selections.add(cb.count(root));
+		cq.multiselect(selections).groupBy(keys);
+		Predicate predicate = new FilterSpecification<T>(filter).setGlobalAttributes(GLOBAL_ATTRIBUTES).toPredicate(root, cq, cb);
+		if (predicate != null) {
+			cq.where(predicate);
+		}
+
+		List<Tuple> groups = execute(() -> withTimeout(entityManager.createQuery(cq))
+				.setMaxResults(budget.getMaxFacetGroups() + 1)
+				.getResultList());
+		budget.checkFacetGroups(groups.size());
+		for (Tuple group : groups) {
+			Object[] values = group.toArray();
+			facets.add(Arrays.copyOf(values, keys.size()), (Long) values[keys.size()]);
+		}
+		return facets.getFacets();
+	}
+
+	/**
+	 * Run a statement, recording its time against the budget, and reporting a statement
+	 * cancelled by its timeout as exceeding the budget.
+	 */
+	private <R> R execute(Supplier<R> statement) {
+		long start = System.nanoTime();
+		try {
+			return statement.get();
+		} catch (QueryTimeoutException e) {
+			throw budget.timedOut(e);
+		} finally {
+			budget.recordTime(System.nanoTime() - start);
+		}
+	}
+
+	private <Q extends TypedQuery<?>> Q withTimeout(Q query) {
+		if (budget.getTimeoutSeconds() > 0) {
+			query.setHint(HINT_TIMEOUT, budget.getTimeoutSeconds());
+		}
+		return query;
+	}
+
+	private <Q extends TypedQuery<?>> Q limit(Q query, Integer first, Integer maxResults) {
+		withTimeout(query);
+		if (first != null) {
+			query.setFirstResult(first);
+		}
+		if (maxResults != null) {
+			query.setMaxResults(maxResults);
+		}
+		return query;
+	}
+
+	private FilterAttributes getAttributes(Class<T> domainClass) {
+		return FilterAttributes.of(entityManager.getMetamodel().entity(domainClass));
+	}
+
+	private List<Object> getSortKeys(T row, Sort sort) {
+		BeanWrapper wrapper = PropertyAccessorFactory.forBeanPropertyAccess(row);
+		return sort.stream()
+				.map(order -> wrapper.getPropertyValue(order.getProperty()))
+				.toList();
+	}
+
+	/**
+	 * Reads the rows of a page from a plan.
+	 */
+	@FunctionalInterface
+	private interface RowReader<T, R> {
+
+		List<R> read(FilterPlan<T> plan, List<Object> seekKeys, Integer first, Integer maxResults);
+	}
 }
@@ -61,11 +61,39 @@ public class UIFilter {
 	@Singular
 	Map<String, List<UIFilterData>> filters;
 
+	/**
+	 * The attributes to return. If empty, whole records are returned. Otherwise only these
+	 * attributes are selected, along with the id and the sort keys.
+	 */
+	@Singular
+	List<String> fields;
+
 	/**
 	 * The name of the attribute supplied for a global search.
 	 */
 	String globalFieldName;
 
+	/**
+	 * The opaque continuation token returned with the previous page. If present, the
+	 * page is found by seeking past the last row of the previous page rather than by
+	 * offset, and {@code first} is not used to position the query.
+	 */
+	String cursor;
+
+	/**
+	 * If true, the total number of matching records is not counted, and the result
+	 * only reports whether more records follow the page.
+	 */
+	@Default
+	Boolean slice = false;
+
+	/**
+	 * The facets to count over all the records matching the filter, returned along with
+	 * the page.
+	 */
+	@Singular
+	List<UIFilterFacet> facets;
+
 	public static class UIFilterBuilder {
 
 		public UIFilterBuilder addSortField(String field, int order) {
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.heroes.uifilter.bean;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Requests counts of all the records matching a filter by the values of an attribute.
+ * Without an interval or unit, records are counted by value, which suits attributes with
+ * few distinct values. A numeric attribute may instead be counted in buckets of a fixed
+ * width, and a date attribute in buckets of a year, month, or day.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UIFilterFacet {
+
+	/**
+	 * The attribute to count by.
+	 */
+	String field;
+
+	/**
+	 * For a histogram of a numeric attribute, the width of each bucket. Each bucket is
+	 * named by its lowest value.
+	 */
+	Long interval;
+
+	/**
+	 * For a histogram of a date attribute, the length of each bucket. Each bucket is named
+	 * by its date, as yyyy, yyyy-MM, or yyyy-MM-dd.
+	 */
+	UIFilterFacetUnit unit;
+
+	/**
+	 * For counts by value, the maximum number of values returned, most frequent first.
+	 * If not set, 20 values are returned.
+	 */
+	Integer limit;
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.kathrynhuxtable.heroes.uifilter.bean;
+
+import java.util.List;
+import java.util.Map;
+
+import lombok.Data;
+
+/**
+ * A page of records matching a UIFilter.
+ */
+@Data
+public class UIFilterPage<T> {
+
+	/**
+	 * The records on the page.
+	 */
+	private List<T> records;
+
+	/**
+	 * The total number of matching records, or {@code null} if it was not counted.
+	 */
+	private Long totalRecords;
+
+	/**
+	 * Whether more records follow this page.
+	 */
+	private boolean more;
+
+	/**
+	 * The continuation token for the next page, or {@code null} if no more records follow.
+	 */
+	private String cursor;
+
+	/**
+	 * The buckets of each requested facet, by attribute, or {@code null} if none were requested.
+	 */
+	private Map<String, List<UIFilterBucket>> facets;
+}
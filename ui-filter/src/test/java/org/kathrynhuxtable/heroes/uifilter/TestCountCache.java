@@ -0,0 +1,144 @@
+/*
+ * Copyright 2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.heroes.uifilter;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jakarta.persistence.metamodel.Attribute.PersistentAttributeType;
+import jakarta.persistence.metamodel.EntityType;
+import jakarta.persistence.metamodel.SingularAttribute;
+import org.junit.Test;
+
+import org.kathrynhuxtable.heroes.uifilter.bean.UIFilter;
+import org.kathrynhuxtable.heroes.uifilter.bean.UIFilterData;
+import org.kathrynhuxtable.heroes.uifilter.bean.UIFilterMatchMode;
+
+import static org.junit.Assert.*;
+
+public class TestCountCache {
+
+	private static final FilterAttributes ATTRIBUTES = FilterAttributes.of(entityType(Sample.class));
+
+	private final FilterCountCache cache = new FilterCountCache(100);
+	private final AtomicInteger counted = new AtomicInteger();
+
+	@Test
+	public void testEquivalentFiltersShareKey() {
+		UIFilter filter = UIFilter.builder()
+				.addFilter("name", UIFilterData.builder().value("Élodie").build())
+				.addFilter("rating", UIFilterData.builder().value(3).build())
+				.addFilter("rating", UIFilterData.builder().value(5).build())
+				.build();
+		// Fields and constraints reordered, accents removed and case changed under the search key.
+		UIFilter equivalent = UIFilter.builder()
+				.addFilter("rating", UIFilterData.builder().value(5).matchMode(UIFilterMatchMode.equals).build())
+				.addFilter("rating", UIFilterData.builder().value(3).matchMode(UIFilterMatchMode.equals).build())
+				.addFilter("name", UIFilterData.builder().value("ELODIE").matchMode(UIFilterMatchMode.contains).build())
+				.build();
+
+		assertEquals(7L, count(filter));
+		assertEquals(7L, count(equivalent));
+		assertEquals(1, counted.get());
+	}
+
+	@Test
+	public void testInWithoutSearchKeyIsCaseSensitive() {
+		UIFilter filter = UIFilter.builder()
+				.addFilter("city", UIFilterData.builder().value(List.of("Boston", "Salem")).matchMode(UIFilterMatchMode.in).build())
+				.build();
+		UIFilter lowerCase = UIFilter.builder()
+				.addFilter("city", UIFilterData.builder().value(List.of("boston", "salem")).matchMode(UIFilterMatchMode.in).build())
+				.build();
+
+		count(filter);
+		count(lowerCase);
+		assertEquals(2, counted.get());
+	}
+
+	@Test
+	public void testInvalidate() {
+		UIFilter filter = UIFilter.builder()
+				.addFilter("city", UIFilterData.builder().value("Boston").build())
+				.build();
+
+		count(filter);
+		count(filter);
+		assertEquals(1, counted.get());
+
+		cache.invalidate(Sample.class);
+		count(filter);
+		assertEquals(2, counted.get());
+	}
+
+	private long count(UIFilter filter) {
+		return cache.get(Sample.class, ATTRIBUTES, filter, List.of("name"), () -> {
+			counted.incrementAndGet();
+			return 7L;
+		});
+	}
+
+	/**
+	 * Build just enough of a JPA entity type to find the attributes of a class whose
+	 * fields are all basic.
+	 */
+	private static EntityType<?> entityType(Class<?> javaType) {
+		Set<SingularAttribute<?, ?>> attributes = new HashSet<>();
+		for (Field field : javaType.getDeclaredFields()) {
+			attributes.add(proxy(SingularAttribute.class, (proxy, method, args) -> switch (method.getName()) {
+				case "getName" -> field.getName();
+				case "getJavaType" -> field.getType();
+				case "getJavaMember" -> field;
+				case "getPersistentAttributeType" -> PersistentAttributeType.BASIC;
+				case "isId" -> field.getName().equals("id");
+				default -> identity(proxy, method.getName(), args);
+			}));
+		}
+		return proxy(EntityType.class, (proxy, method, args) -> switch (method.getName()) {
+			case "getName" -> javaType.getSimpleName();
+			case "getJavaType" -> javaType;
+			case "getSingularAttributes" -> attributes;
+			default -> identity(proxy, method.getName(), args);
+		});
+	}
+
+	private static Object identity(Object proxy, String method, Object[] args) {
+		return switch (method) {
+			case "hashCode" -> System.identityHashCode(proxy);
+			case "equals" -> proxy == args[0];
+			default -> throw new UnsupportedOperationException(method);
+		};
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+		return (T) Proxy.newProxyInstance(TestCountCache.class.getClassLoader(), new Class<?>[] {type}, handler);
+	}
+
+	private static class Sample {
+		private Long id;
+		private String name;
+		@SearchKey("name")
+		private String nameKey;
+		private String city;
+		private Integer rating;
+	}
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.kathrynhuxtable.heroes.uifilter;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.springframework.data.domain.Sort;
+
+import static org.junit.Assert.*;
+
+public class TestCursor {
+
+	@Test
+	public void testRoundTrip() {
+		Sort sort = Sort.by(Sort.Order.desc("rating"), Sort.Order.asc("name"), Sort.Order.asc("id"));
+		String signature = UIFilterCursor.signature(sort);
+
+		Timestamp timestamp = new Timestamp(1700000000123L);
+		timestamp.setNanos(123456789);
+		String token = UIFilterCursor.encode(signature, Arrays.asList(5, null, "Magneta", timestamp, 42L));
+
+		List<Object> keys = UIFilterCursor.decode(signature, token);
+		assertEquals(5, keys.size());
+		assertEquals(5, keys.get(0));
+		assertNull(keys.get(1));
+		assertEquals("Magneta", keys.get(2));
+		assertEquals(timestamp, keys.get(3));
+		assertEquals(42L, keys.get(4));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSortMismatch() {
+		String token = UIFilterCursor.encode(UIFilterCursor.signature(Sort.by("name", "id")), Arrays.asList("Magneta", 42L));
+		UIFilterCursor.decode(UIFilterCursor.signature(Sort.by("rating", "id")), token);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMalformed() {
+		UIFilterCursor.decode(UIFilterCursor.signature(Sort.by("id")), "not a cursor");
+	}
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2025 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.kathrynhuxtable.heroes.uifilter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+import org.kathrynhuxtable.heroes.uifilter.bean.UIFilterPage;
+
+import static org.junit.Assert.*;
+
+public class TestPage {
+
+	private static final List<Integer> TABLE = IntStream.range(0, 25).boxed().toList();
+
+	@Test
+	public void testShortLastPage() {
+		UIFilterPage<Integer> page = UIFilterServiceImpl.toPage(TABLE.subList(20, 25), 10, 20, false, false, this::noCount);
+		assertEquals(Long.valueOf(25), page.getTotalRecords());
+		assertFalse(page.isMore());
+	}
+
+	@Test
+	public void testEmptyPagePastEnd() {
+		UIFilterPage<Integer> page = UIFilterServiceImpl.toPage(List.of(), 10, 40, false, false, () -> TABLE.size());
+		assertEquals(Long.valueOf(25), page.getTotalRecords());
+		assertFalse(page.isMore());
+		assertTrue(page.getRecords().isEmpty());
+	}
+
+	@Test
+	public void testEmptyTable() {
+		UIFilterPage<Integer> page = UIFilterServiceImpl.toPage(List.of(), 10, 0, false, false, this::noCount);
+		assertEquals(Long.valueOf(0), page.getTotalRecords());
+		assertFalse(page.isMore());
+	}
+
+	@Test
+	public void testWalkCursorsToEnd() {
+		// 5 and 25 divide the table into full pages, 7 leaves a short last page, and 30 is one short page.
+		for (int rows : new int[] {5, 7, 25, 30}) {
+			List<Integer> seen = new ArrayList<>();
+			UIFilterPage<Integer> page = UIFilterServiceImpl.toPage(
+					TABLE.subList(0, Math.min(rows, TABLE.size())), rows, 0, false, false, () -> TABLE.size());
+			seen.addAll(page.getRecords());
+			while (page.isMore()) {
+				// Seek past the last row, reading one extra row, from a stale offset.
+				int after = page.getRecords().get(page.getRecords().size() - 1);
+				List<Integer> read = TABLE.subList(after + 1, Math.min(after + 2 + rows, TABLE.size()));
+				page = UIFilterServiceImpl.toPage(read, rows, 0, false, true, () -> TABLE.size());
+				assertFalse("Empty page after rows " + seen.size(), page.getRecords().isEmpty());
+				assertEquals(Long.valueOf(TABLE.size()), page.getTotalRecords());
+				seen.addAll(page.getRecords());
+			}
+			assertEquals("Rows of " + rows, TABLE, seen);
+		}
+	}
+
+	@Test
+	public void testSliceIsNotCounted() {
+		UIFilterPage<Integer> page = UIFilterServiceImpl.toPage(TABLE.subList(0, 11), 10, 0, true, false, this::noCount);
+		assertNull(page.getTotalRecords());
+		assertTrue(page.isMore());
+		assertEquals(10, page.getRecords().size());
+	}
+
+	private long noCount() {
+		throw new AssertionError("Counted a page whose total is known");
+	}
+}
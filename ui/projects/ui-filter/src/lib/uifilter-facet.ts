@@ -0,0 +1,34 @@
+/**
+ * Requests counts of the filtered records by the values of a field.
+ * @group Interface
+ */
+export interface UIFilterFacet {
+	/**
+	 * The field to count by.
+	 */
+	field: string;
+
+	/**
+	 * For a histogram of a numeric field, the width of each bucket.
+	 */
+	interval?: number;
+
+	/**
+	 * For a histogram of a date field, the length of each bucket.
+	 */
+	unit?: 'year' | 'month' | 'day';
+
+	/**
+	 * For counts by value, the maximum number of values returned, most frequent first.
+	 */
+	limit?: number;
+}
+
+/**
+ * The count of the filtered records in one bucket of a facet.
+ * @group Interface
+ */
+export interface UIFilterBucket {
+	value: any;
+	count: number;
+}
@@ -1,7 +1,12 @@
+import { UIFilterBucket } from "./uifilter-facet";
+
 /**
  * Result contains the data and record count (for pagination)
  */
 export interface UIFilterResult<T> {
 	records: T[];
 	totalRecords: number;
+	more?: boolean;
+	cursor?: string;
+	facets?: { [field: string]: UIFilterBucket[] };
 }
\ No newline at end of file
@@ -1,6 +1,7 @@
 import { FilterMetadata } from "primeng/api";
 import { TableLazyLoadEvent } from 'primeng/table';
 import { UIFilterData } from "./uifilter-data";
+import { UIFilterFacet } from "./uifilter-facet";
 import { UIFilterSort } from "./uifilter-sort";
 
 /**
@@ -30,11 +31,31 @@ export class UIFilter {
     [s: string]: UIFilterData[];
   };
 
+  /**
+   * The fields to return. If empty, whole records are returned.
+   */
+  public fields?: string[];
+
   /**
    * The name of the attribute supplied for a global search.
    */
   public globalFieldName?: string;
 
+  /**
+   * The continuation token returned with the previous page, for keyset pagination.
+   */
+  public cursor?: string;
+
+  /**
+   * If true, the total is not counted and the result only reports whether more records follow.
+   */
+  public slice?: boolean;
+
+  /**
+   * The facets to count over all the filtered records, returned along with the page.
+   */
+  public facets?: UIFilterFacet[];
+
   constructor(event: TableLazyLoadEvent) {
     this.first = event.first;
 
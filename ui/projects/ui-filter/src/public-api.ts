@@ -6,3 +6,4 @@ export * from './lib/uifilter';
 export * from './lib/uifilter-data';
 export * from './lib/uifilter-sort';
 export * from './lib/uifilter-result';
+export * from './lib/uifilter-facet';
@@ -25,6 +25,7 @@ export class Hero {
 		public power: string,
 		public alterEgo?: string,
 		public rating?: number,
-		public powerDate?: Date) {
+		public powerDate?: Date,
+		public version?: number) {
 	}
 }
\ No newline at end of file